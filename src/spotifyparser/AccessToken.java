@@ -0,0 +1,48 @@
+package spotifyparser;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An access token of the Spotify API, along with its expiry time.
+ */
+public class AccessToken {
+
+	private final String value;
+	private final long expiresAt;
+
+	/**
+	 * Creates a token obtained just now.
+	 *
+	 * @param value the token itself.
+	 * @param expiresIn the lifetime of the token, in seconds.
+	 */
+	public AccessToken(String value, long expiresIn) {
+		this.value = value;
+		this.expiresAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(expiresIn);
+	}
+
+	public String getValue() {
+		return value;
+	}
+
+	/**
+	 * Returns the remaining lifetime of this token.
+	 *
+	 * @param unit the unit of the result.
+	 * @return the remaining lifetime, negative if already expired.
+	 */
+	public long getRemaining(TimeUnit unit) {
+		return unit.convert(expiresAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Checks whether this token expires within a given delay.
+	 *
+	 * @param delay the delay.
+	 * @param unit the unit of {@code delay}.
+	 * @return true if the token will have expired after the delay.
+	 */
+	public boolean expiresWithin(long delay, TimeUnit unit) {
+		return expiresAt - System.nanoTime() <= unit.toNanos(delay);
+	}
+}
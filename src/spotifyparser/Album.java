@@ -1,35 +1,140 @@
 package spotifyparser;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javafx.scene.image.Image;
 
+/**
+ * An album, viewed over one row of an {@link AlbumTable}, along with its
+ * cover once loaded.
+ */
 public class Album {
 
-	private final String artistName;
-	private final String albumName;
-	private final Image coverImage;
-	private final List<TrackData> tracks;
+	private final AlbumTable table;
+	private final int row;
 
-	public Album(String artistName, String albumName, Image image, List<TrackData> tracks) {
-		this.artistName = artistName;
-		this.albumName = albumName;
-		this.coverImage = image;
-		this.tracks = tracks;
+	private final CompletableFuture<Image> cover = new CompletableFuture<>();
+	private final AtomicBoolean coverRequested = new AtomicBoolean();
+	private volatile byte[] coverData;
+
+	public Album(String id, String artistName, String albumName, String coverImageURL, List<TrackData> tracks) {
+		TrackTable trackTable = new TrackTable();
+		for (TrackData track : tracks) {
+			trackTable.add(track.getName(), track.getId(), track.getLength(), track.getTrackNumber(), track.getPreviewURL());
+		}
+
+		this.table = new AlbumTable();
+		this.row = table.add(id, artistName, albumName, coverImageURL, trackTable);
+	}
+
+	Album(AlbumTable table, int row) {
+		this.table = table;
+		this.row = row;
+	}
+
+	public String getId() {
+		return table.getId(row);
 	}
 
 	public String getArtistName() {
-		return artistName;
+		return table.getArtistName(row);
 	}
 
 	public String getAlbumName() {
-		return albumName;
+		return table.getAlbumName(row);
+	}
+
+	/**
+	 * Returns the URL of the cover variant closest to the size at which it
+	 * is displayed.
+	 *
+	 * @return the URL, or null if the album has no cover.
+	 */
+	public String getCoverImageURL() {
+		return table.getCoverImageURL(row);
+	}
+
+	/**
+	 * Returns the URL of the largest variant of the cover, such as for
+	 * saving it.
+	 *
+	 * @return the URL, or null if the album has no cover.
+	 */
+	public String getLargestCoverImageURL() {
+		return table.getLargestCoverImageURL(row);
+	}
+
+	/**
+	 * Returns the cover of this album, which is loaded in the background by a
+	 * {@link CoverLoader}. The future is completed with null if the album has
+	 * no cover.
+	 *
+	 * @return the future cover image.
+	 */
+	public CompletableFuture<Image> getCover() {
+		return cover;
 	}
 
+	/**
+	 * Returns the cover of this album if it is already loaded.
+	 *
+	 * @return the cover image, or null if not loaded yet or if there is none.
+	 */
 	public Image getCoverImage() {
-		return coverImage;
+		return cover.isDone() && !cover.isCompletedExceptionally() ? cover.join() : null;
 	}
 
+	/**
+	 * Returns the tracks of this album. Tracks are created on access, so
+	 * they should be compared with {@link TrackData#equals(Object)}.
+	 *
+	 * @return an unmodifiable view over the tracks.
+	 */
 	public List<TrackData> getTracks() {
-		return tracks;
+		return table.getTracks(row).asList();
+	}
+
+	TrackTable getTrackTable() {
+		return table.getTracks(row);
+	}
+
+	/**
+	 * Replaces the tracks of this album, before it is published.
+	 */
+	void setTrackTable(TrackTable tracks) {
+		table.setTracks(row, tracks);
+	}
+
+	/**
+	 * Roughly estimates the memory used by this album, excluding its cover.
+	 *
+	 * @return the size of the album, in bytes.
+	 */
+	long getMemoryUsage() {
+		return 64 + table.getMemoryUsage() / table.size() + table.getTracks(row).getMemoryUsage();
+	}
+
+	/**
+	 * Returns the cover of this album as it was downloaded, before decoding.
+	 *
+	 * @return the encoded image, or null if not loaded yet or if there is
+	 * none. Must not be modified.
+	 */
+	public byte[] getCoverData() {
+		return coverData;
+	}
+
+	void setCoverData(byte[] coverData) {
+		this.coverData = coverData;
+	}
+
+	/**
+	 * Marks the cover as being loaded.
+	 *
+	 * @return true if the cover was not requested before.
+	 */
+	boolean requestCover() {
+		return coverRequested.compareAndSet(false, true);
 	}
 }
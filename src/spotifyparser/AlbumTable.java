@@ -0,0 +1,139 @@
+package spotifyparser;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Albums stored by column rather than as separate strings, in the same way
+ * as {@link TrackTable}. Artist names are stored once per table, and the
+ * tracks of each album are kept in their own table. {@link Album} is a view
+ * over one row.
+ * <p>
+ * A table is filled by a single thread, and may be read concurrently once
+ * published.
+ */
+public class AlbumTable {
+
+	private final IdColumn ids = new IdColumn();
+	private final StringColumn albumNames = new StringColumn();
+	private final UrlColumn coverImageURLs = new UrlColumn();
+	private final UrlColumn largestCoverImageURLs = new UrlColumn();
+	private final StringDictionary artistNames = new StringDictionary(Integer.MAX_VALUE);
+	private int[] artists = new int[4];
+	private TrackTable[] tracks = new TrackTable[4];
+	private int size;
+
+	/**
+	 * Appends an album.
+	 *
+	 * @param id the Spotify ID of the album.
+	 * @param artistName the name of the main artist of the album.
+	 * @param albumName the name of the album.
+	 * @param coverImageURL the URL of the cover of the album, or null.
+	 * @param tracks the tracks of the album.
+	 * @return the row of the album.
+	 */
+	public int add(String id, String artistName, String albumName, String coverImageURL, TrackTable tracks) {
+		return add(id, artistName, albumName, coverImageURL, coverImageURL, tracks);
+	}
+
+	/**
+	 * Appends an album whose cover is displayed at a smaller size than its
+	 * largest variant.
+	 *
+	 * @param id the Spotify ID of the album.
+	 * @param artistName the name of the main artist of the album.
+	 * @param albumName the name of the album.
+	 * @param coverImageURL the URL of the cover displayed, or null.
+	 * @param largestCoverImageURL the URL of the largest variant of the
+	 * cover, or null.
+	 * @param tracks the tracks of the album.
+	 * @return the row of the album.
+	 */
+	public int add(String id, String artistName, String albumName, String coverImageURL,
+			String largestCoverImageURL, TrackTable tracks) {
+		if (size == artists.length) {
+			artists = Arrays.copyOf(artists, Math.max(4, size * 2));
+			this.tracks = Arrays.copyOf(this.tracks, Math.max(4, size * 2));
+		}
+
+		ids.add(id);
+		albumNames.add(albumName);
+		coverImageURLs.add(coverImageURL);
+		// Most often the same image, which is then only stored once
+		largestCoverImageURLs.add(Objects.equals(largestCoverImageURL, coverImageURL) ? null : largestCoverImageURL);
+		artists[size] = (artistName != null) ? artistNames.indexOf(artistName) : -1;
+		this.tracks[size] = tracks;
+		return size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Creates a view over an album. Each call returns a distinct album, with
+	 * its own cover.
+	 *
+	 * @param row the row of the album.
+	 * @return the album.
+	 */
+	public Album get(int row) {
+		if (row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException("Row: " + row + ", size: " + size);
+		}
+
+		return new Album(this, row);
+	}
+
+	/**
+	 * Releases the capacity reserved for future rows.
+	 */
+	public void trimToSize() {
+		ids.trimToSize();
+		albumNames.trimToSize();
+		coverImageURLs.trimToSize();
+		largestCoverImageURLs.trimToSize();
+		artists = Arrays.copyOf(artists, size);
+		tracks = Arrays.copyOf(tracks, size);
+	}
+
+	/**
+	 * Roughly estimates the memory used by this table, tracks excluded.
+	 *
+	 * @return the size of the table, in bytes.
+	 */
+	public long getMemoryUsage() {
+		return 64 + ids.getMemoryUsage() + albumNames.getMemoryUsage() + coverImageURLs.getMemoryUsage()
+				+ largestCoverImageURLs.getMemoryUsage() + 8L * (artists.length + tracks.length);
+	}
+
+	String getId(int row) {
+		return ids.get(row);
+	}
+
+	String getArtistName(int row) {
+		return (artists[row] >= 0) ? artistNames.get(artists[row]) : null;
+	}
+
+	String getAlbumName(int row) {
+		return albumNames.get(row);
+	}
+
+	String getCoverImageURL(int row) {
+		return coverImageURLs.get(row);
+	}
+
+	String getLargestCoverImageURL(int row) {
+		String url = largestCoverImageURLs.get(row);
+		return (url != null) ? url : coverImageURLs.get(row);
+	}
+
+	TrackTable getTracks(int row) {
+		return tracks[row];
+	}
+
+	void setTracks(int row, TrackTable tracks) {
+		this.tracks[row] = tracks;
+	}
+}
@@ -0,0 +1,99 @@
+package spotifyparser;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder events emitted along with the metrics of {@link ApiMetrics},
+ * so that slow requests, retries and cover decodes can be correlated with
+ * garbage collections and thread activity in a recording. Request and cover
+ * decode events last as long as what they describe, so that they line up
+ * with the threads they ran on; retries are instant, and carry their delay
+ * as a field.
+ * <p>
+ * Events are only created through {@link ApiMetrics}, which checks first
+ * that the running JVM has Flight Recorder events (JDK 8u262 and later).
+ */
+final class ApiEvents {
+
+	private ApiEvents() {
+	}
+
+	@Name("spotifyparser.Request")
+	@Label("API Request")
+	@Description("A request to the Spotify Web API, until its body was decoded")
+	@Category({"Spotify Parser", "API"})
+	@StackTrace(false)
+	static final class RequestEvent extends Event {
+
+		@Label("Endpoint")
+		String endpoint;
+
+		@Label("URL")
+		String url;
+
+		@Label("Status")
+		@Description("HTTP status code, or -1 if no response was received")
+		int status;
+
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+
+		@Label("Latency")
+		@Description("Time until the response headers were received")
+		@Timespan
+		long latency;
+
+		@Label("Decode Time")
+		@Timespan
+		long decodeTime;
+	}
+
+	@Name("spotifyparser.Retry")
+	@Label("API Retry")
+	@Description("A request retried after a failure or a 429 response")
+	@Category({"Spotify Parser", "API"})
+	@StackTrace(false)
+	static final class RetryEvent extends Event {
+
+		@Label("URL")
+		String url;
+
+		@Label("Attempt")
+		@Description("Number of the attempt that failed, starting at 0")
+		int attempt;
+
+		@Label("Status")
+		@Description("HTTP status code, or -1 if the request failed")
+		int status;
+
+		@Label("Delay")
+		@Timespan
+		long delay;
+	}
+
+	@Name("spotifyparser.CoverDecode")
+	@Label("Cover Decode")
+	@Category({"Spotify Parser", "Covers"})
+	@StackTrace(false)
+	static final class CoverDecodeEvent extends Event {
+
+		@Label("URL")
+		String url;
+
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+
+		@Label("Decode Time")
+		@Timespan
+		long decodeTime;
+	}
+}
@@ -0,0 +1,521 @@
+package spotifyparser;
+
+import java.beans.ConstructorProperties;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Records where the time of a {@link SpotifyAPI} goes: the latency of each
+ * endpoint until the response headers arrive, the time spent reading and
+ * decoding response bodies, the time requests wait for a transport thread, and
+ * the time spent downloading and decoding covers. Together with the counters
+ * of the transports and caches, they tell a slow server from a slow parser or
+ * a saturated executor.
+ * <p>
+ * Metrics may be published through JMX with {@link #register(String)}. Each
+ * request, retry and cover decode is also emitted as a Flight Recorder event,
+ * see {@link ApiEvents}.
+ */
+public class ApiMetrics implements ApiMetricsMXBean {
+
+	/**
+	 * Whether the running JVM has Flight Recorder events, from JDK 8u262.
+	 */
+	private static final boolean EVENTS_AVAILABLE = isEventsAvailable();
+
+	private final SpotifyAPI api;
+
+	private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+	private final Map<String, LatencyHistogram> operations = new ConcurrentHashMap<>();
+	private final LongAdder bytesReceived = new LongAdder();
+	private volatile LatencyHistogram executorWait = new LatencyHistogram();
+	private volatile LatencyHistogram coverDownload = new LatencyHistogram();
+	private volatile LatencyHistogram coverDecode = new LatencyHistogram();
+
+	ApiMetrics(SpotifyAPI api) {
+		this.api = api;
+	}
+
+	/**
+	 * Publishes these metrics in the platform MBean server, under
+	 * {@code spotifyparser:type=ApiMetrics,name=<name>}. Failures are only
+	 * reported, since metrics are not needed to use the API.
+	 *
+	 * @param name the name distinguishing this API client from others.
+	 */
+	public void register(String name) {
+		try {
+			ObjectName objectName = new ObjectName("spotifyparser:type=ApiMetrics,name=" + ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		} catch (JMException ex) {
+			System.err.println("Could not register metrics " + name);
+			ex.printStackTrace(System.err);
+		}
+	}
+
+	/**
+	 * Starts the event of a request about to be sent.
+	 *
+	 * @return the event, to be passed to
+	 * {@link #recordRequest(java.lang.Object, java.lang.String, long, int)}
+	 * and then {@link #recordBody(java.lang.Object, java.lang.String, int, long, long, long)}.
+	 * Null if Flight Recorder events are not available.
+	 */
+	Object beginRequest() {
+		if (!EVENTS_AVAILABLE) {
+			return null;
+		}
+
+		ApiEvents.RequestEvent event = new ApiEvents.RequestEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Records a request, from the time it was sent until its response headers
+	 * were received. Its event ends here if the request failed.
+	 *
+	 * @param event the event returned by {@link #beginRequest()}.
+	 * @param url the full URL of the request.
+	 * @param nanos the latency, in nanoseconds.
+	 * @param status the status code of the response, or -1 if the request
+	 * failed.
+	 */
+	void recordRequest(Object event, String url, long nanos, int status) {
+		Endpoint endpoint = endpointOf(url);
+		endpoint.latency.record(nanos);
+		if (status < 200 || status >= 300) {
+			endpoint.errors.increment();
+
+			// No body is decoded after an error
+			commitRequest(event, url, status, nanos, 0, 0);
+		}
+	}
+
+	/**
+	 * Records the handling of a successful response body, which ends the
+	 * event of its request.
+	 *
+	 * @param event the event returned by {@link #beginRequest()}.
+	 * @param url the full URL of the request.
+	 * @param status the status code of the response.
+	 * @param latency the latency of the request, in nanoseconds.
+	 * @param nanos the time spent reading and decoding the body.
+	 * @param bytes the size of the body.
+	 */
+	void recordBody(Object event, String url, int status, long latency, long nanos, long bytes) {
+		Endpoint endpoint = endpointOf(url);
+		endpoint.decode.record(nanos);
+		endpoint.bytes.add(bytes);
+		bytesReceived.add(bytes);
+		commitRequest(event, url, status, latency, nanos, bytes);
+	}
+
+	/**
+	 * Records a request retried by a transport. Retries are counted by the
+	 * transport itself, so they are only emitted as events.
+	 *
+	 * @param url the full URL of the request.
+	 * @param attempt the number of the attempt that failed, starting at 0.
+	 * @param status the status code of the response, or -1 if the request
+	 * failed.
+	 * @param delay the delay before the next attempt, in nanoseconds.
+	 */
+	static void recordRetry(String url, int attempt, int status, long delay) {
+		if (!EVENTS_AVAILABLE) {
+			return;
+		}
+
+		ApiEvents.RetryEvent event = new ApiEvents.RetryEvent();
+		if (event.isEnabled()) {
+			event.url = url;
+			event.attempt = attempt;
+			event.status = status;
+			event.delay = delay;
+			event.commit();
+		}
+	}
+
+	void recordExecutorWait(long nanos) {
+		executorWait.record(nanos);
+	}
+
+	void recordCoverDownload(long nanos, long bytes) {
+		coverDownload.record(nanos);
+		bytesReceived.add(bytes);
+	}
+
+	/**
+	 * Starts the event of a cover about to be decoded.
+	 *
+	 * @return the event, to be passed to
+	 * {@link #recordCoverDecode(java.lang.Object, java.lang.String, long, long)}.
+	 * Null if Flight Recorder events are not available.
+	 */
+	Object beginCoverDecode() {
+		if (!EVENTS_AVAILABLE) {
+			return null;
+		}
+
+		ApiEvents.CoverDecodeEvent event = new ApiEvents.CoverDecodeEvent();
+		event.begin();
+		return event;
+	}
+
+	void recordCoverDecode(Object event, String url, long nanos, long bytes) {
+		coverDecode.record(nanos);
+		if (event == null) {
+			return;
+		}
+
+		ApiEvents.CoverDecodeEvent decode = (ApiEvents.CoverDecodeEvent) event;
+		decode.end();
+		if (decode.shouldCommit()) {
+			decode.url = url;
+			decode.bytes = bytes;
+			decode.decodeTime = nanos;
+			decode.commit();
+		}
+	}
+
+	private void commitRequest(Object event, String url, int status, long latency, long decodeTime, long bytes) {
+		if (event == null) {
+			return;
+		}
+
+		ApiEvents.RequestEvent request = (ApiEvents.RequestEvent) event;
+		request.end();
+		if (request.shouldCommit()) {
+			request.endpoint = endpointNameOf(url);
+			request.url = url;
+			request.status = status;
+			request.bytes = bytes;
+			request.latency = latency;
+			request.decodeTime = decodeTime;
+			request.commit();
+		}
+	}
+
+	private static boolean isEventsAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return true;
+		} catch (ClassNotFoundException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Records the duration of an operation of the application built on the
+	 * API, such as displaying the result of a search.
+	 *
+	 * @param name the name of the operation.
+	 * @param nanos the duration, in nanoseconds.
+	 */
+	public void recordOperation(String name, long nanos) {
+		operations.computeIfAbsent(name, n -> new LatencyHistogram()).record(nanos);
+	}
+
+	@Override
+	public List<Statistics> getEndpoints() {
+		Map<String, Statistics> sorted = new TreeMap<>();
+		endpoints.forEach((name, endpoint) -> {
+			sorted.put(name, Statistics.of(name, endpoint.latency, endpoint.errors.sum(), endpoint.bytes.sum()));
+			sorted.put(name + " decode", Statistics.of(name + " decode", endpoint.decode, 0, 0));
+		});
+		operations.forEach((name, histogram) -> sorted.put("ui " + name, Statistics.of("ui " + name, histogram, 0, 0)));
+
+		return new ArrayList<>(sorted.values());
+	}
+
+	@Override
+	public long getBytesReceived() {
+		return bytesReceived.sum();
+	}
+
+	@Override
+	public long getCoalescedCount() {
+		return api.getCoalescedCount();
+	}
+
+	@Override
+	public long getRetryCount() {
+		ThrottlingTransport throttling = findTransport(ThrottlingTransport.class);
+		return (throttling != null) ? throttling.getRetryCount() : 0;
+	}
+
+	@Override
+	public long getThrottledCount() {
+		ThrottlingTransport throttling = findTransport(ThrottlingTransport.class);
+		return (throttling != null) ? throttling.getThrottledCount() : 0;
+	}
+
+	@Override
+	public int getConcurrencyLimit() {
+		ThrottlingTransport throttling = findTransport(ThrottlingTransport.class);
+		return (throttling != null) ? throttling.getConcurrencyLimit() : 0;
+	}
+
+	@Override
+	public double getHttpCacheHitRatio() {
+		CachingTransport cache = findTransport(CachingTransport.class);
+		if (cache == null) {
+			return 0;
+		}
+
+		// Revalidated responses are served from the cache as well
+		long served = cache.getHitCount() + cache.getRevalidationCount();
+		return ratio(served, served + cache.getMissCount());
+	}
+
+	@Override
+	public double getArtistCacheHitRatio() {
+		LruCache<?, ?> cache = api.getArtistIdCache();
+		return ratio(cache.getHitCount(), cache.getHitCount() + cache.getMissCount());
+	}
+
+	@Override
+	public double getAlbumCacheHitRatio() {
+		LruCache<?, ?> cache = api.getAlbumCache();
+		return ratio(cache.getHitCount(), cache.getHitCount() + cache.getMissCount());
+	}
+
+	@Override
+	public Statistics getExecutorWait() {
+		return Statistics.of("executor wait", executorWait, 0, 0);
+	}
+
+	@Override
+	public int getExecutorActiveThreads() {
+		Executor executor = api.getTransport().getExecutor();
+		return (executor instanceof ThreadPoolExecutor) ? ((ThreadPoolExecutor) executor).getActiveCount() : 0;
+	}
+
+	@Override
+	public int getExecutorQueuedTasks() {
+		Executor executor = api.getTransport().getExecutor();
+		return (executor instanceof ThreadPoolExecutor) ? ((ThreadPoolExecutor) executor).getQueue().size() : 0;
+	}
+
+	@Override
+	public Statistics getCoverDownload() {
+		return Statistics.of("cover download", coverDownload, 0, 0);
+	}
+
+	@Override
+	public Statistics getCoverDecode() {
+		return Statistics.of("cover decode", coverDecode, 0, 0);
+	}
+
+	@Override
+	public void reset() {
+		endpoints.clear();
+		operations.clear();
+		bytesReceived.reset();
+		executorWait = new LatencyHistogram();
+		coverDownload = new LatencyHistogram();
+		coverDecode = new LatencyHistogram();
+	}
+
+	/**
+	 * Finds a transport of a given type among the transports of the API and
+	 * their delegates.
+	 */
+	private <T extends HttpTransport> T findTransport(Class<T> type) {
+		HttpTransport transport = api.getTransport();
+		while (transport != null) {
+			if (type.isInstance(transport)) {
+				return type.cast(transport);
+			}
+
+			if (transport instanceof CachingTransport) {
+				transport = ((CachingTransport) transport).getDelegate();
+			} else if (transport instanceof ThrottlingTransport) {
+				transport = ((ThrottlingTransport) transport).getDelegate();
+			} else {
+				transport = null;
+			}
+		}
+		return null;
+	}
+
+	private static double ratio(long part, long total) {
+		return (total == 0) ? 0 : (double) part / total;
+	}
+
+	private Endpoint endpointOf(String url) {
+		return endpoints.computeIfAbsent(endpointNameOf(url), name -> new Endpoint());
+	}
+
+	/**
+	 * Names the endpoint of a URL by its path, where IDs are replaced by a
+	 * placeholder, such as {@code /v1/artists/{id}/albums}.
+	 */
+	static String endpointNameOf(String url) {
+		int scheme = url.indexOf("://");
+		int start = url.indexOf('/', (scheme >= 0) ? scheme + 3 : 0);
+		if (start < 0) {
+			return "/";
+		}
+
+		int end = url.indexOf('?', start);
+		String[] segments = url.substring(start, (end >= 0) ? end : url.length()).split("/");
+
+		StringBuilder name = new StringBuilder();
+		for (String segment : segments) {
+			if (segment.isEmpty()) {
+				continue;
+			}
+
+			name.append('/').append(isId(segment) ? "{id}" : segment);
+		}
+		return (name.length() == 0) ? "/" : name.toString();
+	}
+
+	private static boolean isId(String segment) {
+		if (segment.length() < 16) {
+			return false;
+		}
+
+		for (int i = 0; i < segment.length(); ++i) {
+			if (!Character.isLetterOrDigit(segment.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static class Endpoint {
+
+		final LatencyHistogram latency = new LatencyHistogram();
+		final LatencyHistogram decode = new LatencyHistogram();
+		final LongAdder errors = new LongAdder();
+		final LongAdder bytes = new LongAdder();
+	}
+
+	/**
+	 * A snapshot of the durations recorded for an endpoint or an operation,
+	 * in milliseconds.
+	 */
+	public static class Statistics {
+
+		private final String name;
+		private final long count;
+		private final long errors;
+		private final long bytes;
+		private final double mean;
+		private final double p50;
+		private final double p99;
+		private final double max;
+
+		@ConstructorProperties({"name", "count", "errors", "bytes", "mean", "p50", "p99", "max"})
+		public Statistics(String name, long count, long errors, long bytes, double mean, double p50, double p99, double max) {
+			this.name = name;
+			this.count = count;
+			this.errors = errors;
+			this.bytes = bytes;
+			this.mean = mean;
+			this.p50 = p50;
+			this.p99 = p99;
+			this.max = max;
+		}
+
+		static Statistics of(String name, LatencyHistogram histogram, long errors, long bytes) {
+			TimeUnit unit = TimeUnit.MILLISECONDS;
+			return new Statistics(name, histogram.getCount(), errors, bytes, histogram.getMean(unit),
+					histogram.getPercentile(50, unit), histogram.getPercentile(99, unit), histogram.getMax(unit));
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getErrors() {
+			return errors;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		public double getMean() {
+			return mean;
+		}
+
+		public double getP50() {
+			return p50;
+		}
+
+		public double getP99() {
+			return p99;
+		}
+
+		public double getMax() {
+			return max;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %d calls, %d errors, %d bytes, mean %.1f ms, p50 %.1f ms, p99 %.1f ms, max %.1f ms",
+					name, count, errors, bytes, mean, p50, p99, max);
+		}
+	}
+
+	/**
+	 * Counts the bytes read from a response body.
+	 */
+	static class CountingInputStream extends FilterInputStream {
+
+		private long count;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				count += n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+
+		long getCount() {
+			return count;
+		}
+	}
+}
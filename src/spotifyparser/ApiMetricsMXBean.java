@@ -0,0 +1,61 @@
+package spotifyparser;
+
+import java.util.List;
+
+/**
+ * The management interface of {@link ApiMetrics}. Durations are in
+ * milliseconds.
+ */
+public interface ApiMetricsMXBean {
+
+	/**
+	 * Returns the statistics of each endpoint, and of each operation of the
+	 * user interface.
+	 *
+	 * @return the statistics, sorted by name.
+	 */
+	List<ApiMetrics.Statistics> getEndpoints();
+
+	long getBytesReceived();
+
+	/**
+	 * Returns the number of calls which shared a request in flight for the
+	 * same artist or album, instead of sending their own.
+	 *
+	 * @return the number of coalesced calls.
+	 */
+	long getCoalescedCount();
+
+	long getRetryCount();
+
+	long getThrottledCount();
+
+	int getConcurrencyLimit();
+
+	double getHttpCacheHitRatio();
+
+	double getArtistCacheHitRatio();
+
+	double getAlbumCacheHitRatio();
+
+	/**
+	 * Returns the time requests waited for a transport thread. Growing waits
+	 * mean that the executor is saturated.
+	 *
+	 * @return the statistics of the waits.
+	 */
+	ApiMetrics.Statistics getExecutorWait();
+
+	int getExecutorActiveThreads();
+
+	int getExecutorQueuedTasks();
+
+	ApiMetrics.Statistics getCoverDownload();
+
+	ApiMetrics.Statistics getCoverDecode();
+
+	/**
+	 * Forgets every recorded duration and count.
+	 */
+	void reset();
+}
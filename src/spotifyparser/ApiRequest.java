@@ -0,0 +1,105 @@
+package spotifyparser;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An HTTP request sent through a {@link HttpTransport}.
+ */
+public class ApiRequest {
+
+	private final String method;
+	private final String url;
+	private final Map<String, String> headers = new LinkedHashMap<>();
+	private final byte[] body;
+	private Cancellation cancellation;
+
+	public ApiRequest(String method, String url, byte[] body) {
+		this.method = method;
+		this.url = url;
+		this.body = body;
+	}
+
+	/**
+	 * Creates a GET request to the specified URL.
+	 *
+	 * @param url the full URL, including the query string.
+	 * @return the request.
+	 */
+	public static ApiRequest get(String url) {
+		return new ApiRequest("GET", url, null);
+	}
+
+	/**
+	 * Creates a POST request to the specified URL.
+	 *
+	 * @param url the full URL.
+	 * @param body the data to send.
+	 * @return the request.
+	 */
+	public static ApiRequest post(String url, byte[] body) {
+		return new ApiRequest("POST", url, body);
+	}
+
+	/**
+	 * Sets a header on this request, replacing any previous value.
+	 *
+	 * @param name the header name.
+	 * @param value the header value.
+	 * @return this request.
+	 */
+	public ApiRequest setHeader(String name, String value) {
+		headers.put(name, value);
+		return this;
+	}
+
+	/**
+	 * Sets the cancellation through which this request may be aborted while
+	 * in progress.
+	 *
+	 * @param cancellation the cancellation, or null.
+	 * @return this request.
+	 */
+	public ApiRequest setCancellation(Cancellation cancellation) {
+		this.cancellation = cancellation;
+		return this;
+	}
+
+	/**
+	 * Creates a copy of this request, which may be modified independently.
+	 *
+	 * @return the copy.
+	 */
+	public ApiRequest copy() {
+		ApiRequest copy = new ApiRequest(method, url, body);
+		copy.headers.putAll(headers);
+		copy.cancellation = cancellation;
+		return copy;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public String getURL() {
+		return url;
+	}
+
+	public Map<String, String> getHeaders() {
+		return Collections.unmodifiableMap(headers);
+	}
+
+	public byte[] getBody() {
+		return body;
+	}
+
+	/**
+	 * Returns the cancellation of this request.
+	 *
+	 * @return the cancellation, or null if this request cannot be aborted.
+	 */
+	public Cancellation getCancellation() {
+		return cancellation;
+	}
+}
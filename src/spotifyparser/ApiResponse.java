@@ -0,0 +1,67 @@
+package spotifyparser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An HTTP response received through a {@link HttpTransport}. The body must be
+ * fully read and closed so that the underlying connection can be reused.
+ */
+public class ApiResponse implements Closeable {
+
+	private final int statusCode;
+	private final Map<String, List<String>> headers;
+	private final InputStream body;
+
+	public ApiResponse(int statusCode, Map<String, List<String>> headers, InputStream body) {
+		this.statusCode = statusCode;
+		this.body = body;
+
+		// Header names are case-insensitive
+		this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		headers.forEach((name, values) -> {
+			if (name != null) {
+				this.headers.put(name, values);
+			}
+		});
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * Returns the first value of a header.
+	 *
+	 * @param name the header name. Case-insensitive.
+	 * @return the header value, or null if absent.
+	 */
+	public String getHeader(String name) {
+		List<String> values = headers.get(name);
+		return (values == null || values.isEmpty()) ? null : values.get(0);
+	}
+
+	public Map<String, List<String>> getHeaders() {
+		return Collections.unmodifiableMap(headers);
+	}
+
+	/**
+	 * Returns the body of this response. For error responses, this is the
+	 * error body sent by the server.
+	 *
+	 * @return the body stream, never null.
+	 */
+	public InputStream getBody() {
+		return body;
+	}
+
+	@Override
+	public void close() throws IOException {
+		body.close();
+	}
+}
@@ -0,0 +1,23 @@
+package spotifyparser;
+
+/**
+ * An artist, as returned by an artist search.
+ */
+public class Artist {
+
+	private final String id;
+	private final String name;
+
+	public Artist(String id, String name) {
+		this.id = id;
+		this.name = name;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+}
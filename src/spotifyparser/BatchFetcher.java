@@ -0,0 +1,87 @@
+package spotifyparser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs a list of asynchronous batch requests with at most a fixed number of
+ * them in flight at any time. Requests are started in order, and a new one is
+ * started as soon as a previous one completes, so the caller can consume the
+ * results in order while the following batches are still being fetched.
+ *
+ * @param <T> the type of result of each batch.
+ */
+public class BatchFetcher<T> {
+
+	private final List<Supplier<CompletableFuture<T>>> tasks;
+	private final List<CompletableFuture<T>> results;
+	private final AtomicInteger nextTask = new AtomicInteger();
+
+	private BatchFetcher(List<Supplier<CompletableFuture<T>>> tasks) {
+		this.tasks = tasks;
+		this.results = new ArrayList<>(tasks.size());
+		for (int i = 0; i < tasks.size(); ++i) {
+			results.add(new CompletableFuture<>());
+		}
+	}
+
+	/**
+	 * Starts every task, keeping at most {@code parallelism} of them running
+	 * at once.
+	 *
+	 * @param <T> the type of result of each batch.
+	 * @param tasks the tasks, each starting one request when invoked.
+	 * @param parallelism the maximum number of requests in flight.
+	 * @return one future per task, in the order supplied.
+	 */
+	public static <T> List<CompletableFuture<T>> fetch(List<Supplier<CompletableFuture<T>>> tasks, int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+		}
+
+		BatchFetcher<T> fetcher = new BatchFetcher<>(tasks);
+		for (int i = 0; i < Math.min(parallelism, tasks.size()); ++i) {
+			fetcher.startNext();
+		}
+
+		return fetcher.results;
+	}
+
+	private void startNext() {
+		int index = nextTask.getAndIncrement();
+		if (index >= tasks.size()) {
+			return;
+		}
+
+		CompletableFuture<T> result = results.get(index);
+		if (result.isDone()) {
+			// Cancelled by the caller: skip it
+			startNext();
+			return;
+		}
+
+		CompletableFuture<T> request;
+		try {
+			request = tasks.get(index).get();
+		} catch (RuntimeException ex) {
+			request = new CompletableFuture<>();
+			request.completeExceptionally(ex);
+		}
+
+		// Cancelling a result aborts its request
+		Futures.propagateCancellation(request, result);
+
+		request.whenComplete((value, error) -> {
+			if (error != null) {
+				result.completeExceptionally(error);
+			} else {
+				result.complete(value);
+			}
+
+			startNext();
+		});
+	}
+}
@@ -0,0 +1,119 @@
+package spotifyparser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps byte buffers for reuse, so that reading response bodies does not
+ * allocate a new buffer for every request. Buffers larger than a limit are
+ * not kept.
+ */
+final class BufferPool {
+
+	static final BufferPool SHARED = new BufferPool(16, 1024 * 1024);
+
+	private static final int MIN_BUFFER_SIZE = 8192;
+
+	private final int maxBuffers;
+	private final int maxBufferSize;
+	private final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger size = new AtomicInteger();
+
+	BufferPool(int maxBuffers, int maxBufferSize) {
+		this.maxBuffers = maxBuffers;
+		this.maxBufferSize = maxBufferSize;
+	}
+
+	/**
+	 * Takes a buffer from the pool, or allocates one if none is large
+	 * enough. It should be given back with {@link #release(byte[])}.
+	 *
+	 * @param minSize the minimum length of the buffer.
+	 * @return the buffer, whose content is undefined.
+	 */
+	byte[] acquire(int minSize) {
+		// Only look at a few buffers, most of them have the same size
+		for (int i = 0; i < 4; ++i) {
+			byte[] buffer = buffers.poll();
+			if (buffer == null) {
+				break;
+			}
+
+			size.decrementAndGet();
+			if (buffer.length >= minSize) {
+				return buffer;
+			}
+			release(buffer);
+		}
+
+		// Round up, so that buffers fit more bodies once pooled
+		int length = Math.max(MIN_BUFFER_SIZE, Integer.highestOneBit(Math.max(1, minSize - 1)) << 1);
+		return new byte[(length > 0) ? length : minSize];
+	}
+
+	/**
+	 * Gives back a buffer, which must not be used anymore by the caller.
+	 *
+	 * @param buffer the buffer.
+	 */
+	void release(byte[] buffer) {
+		if (buffer.length > maxBufferSize) {
+			return;
+		}
+		if (size.incrementAndGet() > maxBuffers) {
+			size.decrementAndGet();
+			return;
+		}
+
+		buffers.offer(buffer);
+	}
+
+	/**
+	 * Reads a stream until its end, into buffers of this pool.
+	 *
+	 * @param in the stream.
+	 * @param expectedLength the expected number of bytes, or -1 if unknown.
+	 * @return the bytes read, in a buffer of this pool to be released by the
+	 * caller, along with their number.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	Content readFully(InputStream in, long expectedLength) throws IOException {
+		// One more byte, to detect the end without growing the buffer
+		int initial = (expectedLength >= 0 && expectedLength < maxBufferSize) ? (int) expectedLength + 1 : MIN_BUFFER_SIZE;
+		byte[] buffer = acquire(initial);
+		int length = 0;
+		try {
+			int n;
+			while ((n = in.read(buffer, length, buffer.length - length)) != -1) {
+				length += n;
+				if (length == buffer.length) {
+					byte[] larger = acquire(buffer.length * 2);
+					System.arraycopy(buffer, 0, larger, 0, length);
+					release(buffer);
+					buffer = larger;
+				}
+			}
+		} catch (IOException | RuntimeException ex) {
+			release(buffer);
+			throw ex;
+		}
+
+		return new Content(buffer, length);
+	}
+
+	/**
+	 * Bytes read into a pooled buffer.
+	 */
+	static final class Content {
+
+		final byte[] buffer;
+		final int length;
+
+		Content(byte[] buffer, int length) {
+			this.buffer = buffer;
+			this.length = length;
+		}
+	}
+}
@@ -0,0 +1,539 @@
+package spotifyparser;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * A {@link HttpTransport} keeping GET responses in a cache on disk. Responses
+ * are keyed by their full URL, i.e. endpoint and parameters. Fresh responses,
+ * according to their {@code Cache-Control} header, are served without any
+ * network access; stale ones are revalidated with {@code If-None-Match} when
+ * the server supplied an {@code ETag}. The least recently used entries are
+ * evicted once the cache grows past its size limit.
+ */
+public class CachingTransport implements HttpTransport {
+
+	/**
+	 * Header added to the responses served from the cache, with value
+	 * {@code HIT} or {@code REVALIDATED}.
+	 */
+	public static final String CACHE_STATUS_HEADER = "X-Cache";
+
+	/**
+	 * How much of a response body is read on close to complete a cache entry
+	 * when the caller stopped reading early.
+	 */
+	private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+	static final HttpTransport SHARED = createShared();
+
+	private final HttpTransport delegate;
+	private final Path directory;
+	private final long maxBytes;
+
+	// Body size of every entry, in access order
+	private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+	private long totalBytes;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong revalidations = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Creates a cache on top of another transport.
+	 *
+	 * @param delegate the transport used on cache misses.
+	 * @param directory the directory in which responses are stored. Created if
+	 * it does not exist; existing entries are reused.
+	 * @param maxBytes the maximum total size of the stored bodies.
+	 * @throws IOException if the directory could not be created or listed.
+	 */
+	public CachingTransport(HttpTransport delegate, Path directory, long maxBytes) throws IOException {
+		this.delegate = delegate;
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+
+		Files.createDirectories(directory);
+		loadIndex();
+	}
+
+	private static HttpTransport createShared() {
+		Path directory = Paths.get(System.getProperty("user.home"), ".spotifyparser", "http-cache");
+		try {
+			return new CachingTransport(ThrottlingTransport.SHARED, directory, 64L * 1024 * 1024);
+		} catch (IOException ex) {
+			// Still usable without the cache
+			System.err.println("Could not open HTTP cache " + directory.toAbsolutePath());
+			ex.printStackTrace(System.err);
+			return ThrottlingTransport.SHARED;
+		}
+	}
+
+	@Override
+	public ApiResponse send(ApiRequest request) throws IOException {
+		if (!request.getMethod().equals("GET")) {
+			return delegate.send(request);
+		}
+
+		String key = keyOf(request.getURL());
+		CacheEntry entry = readEntry(key);
+
+		// Serve fresh entries without any network access
+		if (entry != null && entry.isFresh(System.currentTimeMillis())) {
+			ApiResponse cached = openEntry(key, entry, "HIT");
+			if (cached != null) {
+				hits.incrementAndGet();
+				return cached;
+			}
+		}
+
+		// Ask the server whether a stale entry is still valid
+		ApiRequest actual = request;
+		if (entry != null && entry.etag != null) {
+			actual = request.copy().setHeader("If-None-Match", entry.etag);
+		}
+
+		ApiResponse response = delegate.send(actual);
+		if (response.getStatusCode() == 304 && entry != null) {
+			response.close();
+
+			// Still valid: refresh its lifetime
+			CacheEntry refreshed = new CacheEntry(request.getURL(), response, entry);
+			writeEntry(key, refreshed);
+
+			ApiResponse cached = openEntry(key, refreshed, "REVALIDATED");
+			if (cached != null) {
+				revalidations.incrementAndGet();
+				return cached;
+			}
+
+			// Evicted in the meantime: fetch it again in full, and store
+			// it as any other miss
+			response = delegate.send(request);
+		}
+
+		misses.incrementAndGet();
+		if (response.getStatusCode() != 200) {
+			return response;
+		}
+
+		CacheEntry created = new CacheEntry(request.getURL(), response, null);
+		if (!created.isStorable()) {
+			return response;
+		}
+
+		// Store the body while the caller reads it
+		Path temp = Files.createTempFile(directory, key, ".tmp");
+		InputStream body = new CacheFillingStream(response.getBody(), Files.newOutputStream(temp), temp, key, created);
+		return new ApiResponse(response.getStatusCode(), response.getHeaders(), body);
+	}
+
+	@Override
+	public Executor getExecutor() {
+		return delegate.getExecutor();
+	}
+
+	/**
+	 * Returns the transport actually sending the requests.
+	 *
+	 * @return the underlying transport.
+	 */
+	HttpTransport getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Returns the number of requests served from the cache without any
+	 * network access.
+	 *
+	 * @return the number of hits.
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of requests served from the cache after the server
+	 * confirmed the entry was still valid.
+	 *
+	 * @return the number of successful revalidations.
+	 */
+	public long getRevalidationCount() {
+		return revalidations.get();
+	}
+
+	/**
+	 * Returns the number of GET requests for which the full response had to
+	 * be downloaded.
+	 *
+	 * @return the number of misses.
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the current total size of the stored bodies.
+	 *
+	 * @return the size, in bytes.
+	 */
+	public synchronized long getSize() {
+		return totalBytes;
+	}
+
+	private void loadIndex() throws IOException {
+		List<Path> bodies = new ArrayList<>();
+		try (Stream<Path> files = Files.list(directory)) {
+			files.forEach(file -> {
+				String name = file.getFileName().toString();
+				if (name.endsWith(".body")) {
+					bodies.add(file);
+				} else if (name.endsWith(".tmp")) {
+					// Left over by an interrupted download
+					deleteQuietly(file);
+				}
+			});
+		}
+
+		// Least recently used first
+		Map<Path, FileTime> times = new HashMap<>();
+		for (Path body : bodies) {
+			times.put(body, Files.getLastModifiedTime(body));
+		}
+		Collections.sort(bodies, Comparator.comparing(times::get));
+
+		synchronized (this) {
+			for (Path body : bodies) {
+				String name = body.getFileName().toString();
+				long size = Files.size(body);
+				index.put(name.substring(0, name.length() - ".body".length()), size);
+				totalBytes += size;
+			}
+
+			evict();
+		}
+	}
+
+	private CacheEntry readEntry(String key) {
+		synchronized (this) {
+			if (!index.containsKey(key)) {
+				return null;
+			}
+		}
+
+		Properties properties = new Properties();
+		try (Reader in = Files.newBufferedReader(metaPath(key), StandardCharsets.UTF_8)) {
+			properties.load(in);
+			return new CacheEntry(properties);
+		} catch (IOException | RuntimeException ex) {
+			// Missing or corrupted: treat as a miss
+			return null;
+		}
+	}
+
+	private void writeEntry(String key, CacheEntry entry) throws IOException {
+		Path temp = Files.createTempFile(directory, key, ".tmp");
+		try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+			entry.toProperties().store(out, null);
+		}
+		Files.move(temp, metaPath(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private ApiResponse openEntry(String key, CacheEntry entry, String status) throws IOException {
+		Path body = bodyPath(key);
+		InputStream in;
+		try {
+			in = Files.newInputStream(body);
+			Files.setLastModifiedTime(body, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (NoSuchFileException ex) {
+			return null;
+		}
+
+		synchronized (this) {
+			// Mark as recently used
+			index.get(key);
+		}
+
+		Map<String, List<String>> headers = entry.toHeaders();
+		headers.put(CACHE_STATUS_HEADER, Collections.singletonList(status));
+		return new ApiResponse(200, headers, in);
+	}
+
+	private synchronized void commit(String key, long size) {
+		Long previous = index.put(key, size);
+		totalBytes += size - ((previous != null) ? previous : 0);
+		evict();
+	}
+
+	private synchronized void evict() {
+		Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+		while (totalBytes > maxBytes && it.hasNext()) {
+			Map.Entry<String, Long> eldest = it.next();
+			it.remove();
+			totalBytes -= eldest.getValue();
+
+			deleteQuietly(bodyPath(eldest.getKey()));
+			deleteQuietly(metaPath(eldest.getKey()));
+		}
+	}
+
+	private Path bodyPath(String key) {
+		return directory.resolve(key + ".body");
+	}
+
+	private Path metaPath(String key) {
+		return directory.resolve(key + ".meta");
+	}
+
+	static String keyOf(String url) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8));
+			StringBuilder key = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return key.toString();
+		} catch (NoSuchAlgorithmException ex) {
+			throw new AssertionError(ex);
+		}
+	}
+
+	static void deleteQuietly(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException ex) {
+			// Will be retried on the next eviction or startup
+		}
+	}
+
+	/**
+	 * The metadata of a stored response.
+	 */
+	private static class CacheEntry {
+
+		private final String url;
+		private final String etag;
+		private final String contentType;
+		private final String cacheControl;
+		private final long storedAt;
+		private final long maxAge;
+		private final boolean noStore;
+		private final boolean noCache;
+
+		/**
+		 * Creates the metadata of a response received from the server.
+		 *
+		 * @param previous the entry being revalidated, or null.
+		 */
+		CacheEntry(String url, ApiResponse response, CacheEntry previous) {
+			String etagHeader = response.getHeader("ETag");
+			String contentTypeHeader = response.getHeader("Content-Type");
+			String cacheControlHeader = response.getHeader("Cache-Control");
+
+			this.url = url;
+			this.etag = (etagHeader == null && previous != null) ? previous.etag : etagHeader;
+			this.contentType = (contentTypeHeader == null && previous != null) ? previous.contentType : contentTypeHeader;
+			this.cacheControl = (cacheControlHeader == null && previous != null) ? previous.cacheControl : cacheControlHeader;
+			this.storedAt = System.currentTimeMillis();
+
+			long age = 0;
+			boolean store = false;
+			boolean cache = false;
+			if (cacheControl != null) {
+				for (String directive : cacheControl.split(",")) {
+					directive = directive.trim().toLowerCase();
+					if (directive.equals("no-store")) {
+						store = true;
+					} else if (directive.equals("no-cache")) {
+						cache = true;
+					} else if (directive.startsWith("max-age=")) {
+						try {
+							age = Long.parseLong(directive.substring("max-age=".length()).trim());
+						} catch (NumberFormatException ex) {
+							age = 0;
+						}
+					}
+				}
+			}
+
+			this.maxAge = age;
+			this.noStore = store;
+			this.noCache = cache;
+		}
+
+		CacheEntry(Properties properties) {
+			this.url = properties.getProperty("url");
+			this.etag = properties.getProperty("etag");
+			this.contentType = properties.getProperty("contentType");
+			this.cacheControl = properties.getProperty("cacheControl");
+			this.storedAt = Long.parseLong(properties.getProperty("storedAt"));
+			this.maxAge = Long.parseLong(properties.getProperty("maxAge"));
+			this.noStore = false;
+			this.noCache = Boolean.parseBoolean(properties.getProperty("noCache"));
+		}
+
+		/**
+		 * An entry is only worth storing if it can be served as is, or
+		 * revalidated cheaply.
+		 */
+		boolean isStorable() {
+			return !noStore && (etag != null || (maxAge > 0 && !noCache));
+		}
+
+		boolean isFresh(long now) {
+			return !noCache && now < storedAt + maxAge * 1000;
+		}
+
+		Map<String, List<String>> toHeaders() {
+			Map<String, List<String>> headers = new HashMap<>();
+			if (etag != null) {
+				headers.put("ETag", Collections.singletonList(etag));
+			}
+			if (contentType != null) {
+				headers.put("Content-Type", Collections.singletonList(contentType));
+			}
+			if (cacheControl != null) {
+				headers.put("Cache-Control", Collections.singletonList(cacheControl));
+			}
+			return headers;
+		}
+
+		Properties toProperties() {
+			Properties properties = new Properties();
+			properties.setProperty("url", url);
+			if (etag != null) {
+				properties.setProperty("etag", etag);
+			}
+			if (contentType != null) {
+				properties.setProperty("contentType", contentType);
+			}
+			if (cacheControl != null) {
+				properties.setProperty("cacheControl", cacheControl);
+			}
+			properties.setProperty("storedAt", Long.toString(storedAt));
+			properties.setProperty("maxAge", Long.toString(maxAge));
+			properties.setProperty("noCache", Boolean.toString(noCache));
+			return properties;
+		}
+	}
+
+	/**
+	 * Copies a response body to a temporary file as it is read, and commits
+	 * it to the cache once the whole body has been read.
+	 */
+	private class CacheFillingStream extends FilterInputStream {
+
+		private final OutputStream copy;
+		private final Path temp;
+		private final String key;
+		private final CacheEntry entry;
+		private long size;
+		private boolean complete;
+		private boolean closed;
+
+		CacheFillingStream(InputStream in, OutputStream copy, Path temp, String key, CacheEntry entry) {
+			super(in);
+			this.copy = copy;
+			this.temp = temp;
+			this.key = key;
+			this.entry = entry;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b < 0) {
+				complete = true;
+			} else {
+				copy.write(b);
+				size++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n < 0) {
+				complete = true;
+			} else {
+				copy.write(b, off, n);
+				size += n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			// Skipped bytes must still be stored
+			byte[] buffer = new byte[(int) Math.min(n, 8192)];
+			int read = read(buffer, 0, buffer.length);
+			return Math.max(read, 0);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+
+			try {
+				// Complete entries left unread by the caller, such as
+				// trailing whitespace after the JSON document
+				byte[] buffer = new byte[8192];
+				long drained = 0;
+				while (!complete && drained < MAX_DRAIN_BYTES) {
+					int n = read(buffer, 0, buffer.length);
+					drained += Math.max(n, 0);
+				}
+			} catch (IOException ex) {
+				complete = false;
+			} finally {
+				super.close();
+				copy.close();
+			}
+
+			if (!complete) {
+				deleteQuietly(temp);
+				return;
+			}
+
+			try {
+				writeEntry(key, entry);
+				Files.move(temp, bodyPath(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				commit(key, size);
+			} catch (IOException ex) {
+				// The response itself was read successfully
+				deleteQuietly(temp);
+				System.err.println("Could not store cached response for " + entry.url);
+				ex.printStackTrace(System.err);
+			}
+		}
+	}
+}
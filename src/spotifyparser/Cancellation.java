@@ -0,0 +1,62 @@
+package spotifyparser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Signals that the result of a request is not needed anymore. Transports
+ * register the actions aborting the request in progress, such as closing its
+ * connection, which are run as soon as the request is cancelled.
+ */
+public class Cancellation {
+
+	private final List<Runnable> actions = new ArrayList<>();
+	private boolean cancelled;
+
+	/**
+	 * Cancels the request, running every registered action.
+	 */
+	public void cancel() {
+		List<Runnable> toRun;
+		synchronized (this) {
+			if (cancelled) {
+				return;
+			}
+
+			cancelled = true;
+			toRun = new ArrayList<>(actions);
+			actions.clear();
+		}
+
+		toRun.forEach(Runnable::run);
+	}
+
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Registers an action to run on cancellation. If the request is already
+	 * cancelled, the action is run immediately.
+	 *
+	 * @param action the action aborting the request.
+	 * @return a handle which unregisters the action once the request does not
+	 * need to be aborted anymore.
+	 */
+	public Runnable onCancel(Runnable action) {
+		synchronized (this) {
+			if (!cancelled) {
+				actions.add(action);
+				return () -> {
+					synchronized (this) {
+						actions.remove(action);
+					}
+				};
+			}
+		}
+
+		action.run();
+		return () -> {
+		};
+	}
+}
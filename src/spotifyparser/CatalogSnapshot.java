@@ -0,0 +1,236 @@
+package spotifyparser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The albums displayed at the end of a session, stored in a compact binary
+ * file so that the next session can show them before any request. The file
+ * is read at once, and holds the downloaded covers as well, so they are only
+ * decoded.
+ */
+public class CatalogSnapshot {
+
+	private static final int MAGIC = 0x53504353;
+	private static final int VERSION = 2;
+
+	private final String artistName;
+	private final String artistId;
+	private final List<Album> albums;
+	private final int albumIndex;
+
+	/**
+	 * Creates a snapshot.
+	 *
+	 * @param artistName the name of the artist, as searched.
+	 * @param artistId the ID of the artist.
+	 * @param albums the albums of the artist.
+	 * @param albumIndex the index of the album displayed.
+	 */
+	public CatalogSnapshot(String artistName, String artistId, List<Album> albums, int albumIndex) {
+		this.artistName = artistName;
+		this.artistId = artistId;
+		this.albums = Collections.unmodifiableList(new ArrayList<>(albums));
+		this.albumIndex = albumIndex;
+	}
+
+	/**
+	 * Returns the file in the user's home directory where the snapshot of the
+	 * last session is kept.
+	 *
+	 * @return the path of the file.
+	 */
+	public static Path getDefaultPath() {
+		return Paths.get(System.getProperty("user.home"), ".spotifyparser", "catalog.snapshot");
+	}
+
+	/**
+	 * Reads a snapshot.
+	 *
+	 * @param file the snapshot file.
+	 * @return the snapshot, or null if there is none.
+	 * @throws IOException if the file could not be read, or is corrupted.
+	 */
+	public static CatalogSnapshot read(Path file) throws IOException {
+		// Not mapped: every byte is copied anyway, and a mapped file could
+		// not be replaced on Windows until the mapping is collected
+		try {
+			return read(ByteBuffer.wrap(Files.readAllBytes(file)));
+		} catch (NoSuchFileException ex) {
+			return null;
+		} catch (BufferUnderflowException | IllegalArgumentException ex) {
+			throw new IOException("Corrupted snapshot " + file, ex);
+		}
+	}
+
+	private static CatalogSnapshot read(ByteBuffer buffer) throws IOException {
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			throw new IOException("Not a snapshot, or of another version");
+		}
+
+		String artistName = readString(buffer);
+		String artistId = readString(buffer);
+		int albumIndex = buffer.getInt();
+
+		// Same layout as the decoded API responses
+		AlbumTable table = new AlbumTable();
+		List<byte[]> covers = new ArrayList<>();
+		int albumCount = buffer.getInt();
+		for (int i = 0; i < albumCount; ++i) {
+			String id = readString(buffer);
+			String albumArtist = readString(buffer);
+			String albumName = readString(buffer);
+			String coverURL = readString(buffer);
+			String largestCoverURL = readString(buffer);
+
+			TrackTable tracks = new TrackTable();
+			int trackCount = buffer.getInt();
+			for (int j = 0; j < trackCount; ++j) {
+				String name = readString(buffer);
+				String trackId = readString(buffer);
+				int length = buffer.getInt();
+				int trackNumber = buffer.getInt();
+				tracks.add(name, trackId, length, trackNumber, readString(buffer));
+			}
+			tracks.trimToSize();
+			table.add(id, albumArtist, albumName, coverURL, largestCoverURL, tracks);
+
+			int coverLength = buffer.getInt();
+			byte[] cover = null;
+			if (coverLength > buffer.remaining()) {
+				throw new BufferUnderflowException();
+			} else if (coverLength >= 0) {
+				cover = new byte[coverLength];
+				buffer.get(cover);
+			}
+			covers.add(cover);
+		}
+		table.trimToSize();
+
+		List<Album> albums = new ArrayList<>(albumCount);
+		for (int i = 0; i < albumCount; ++i) {
+			Album album = table.get(i);
+			album.setCoverData(covers.get(i));
+			albums.add(album);
+		}
+
+		return new CatalogSnapshot(artistName, artistId, albums, albumIndex);
+	}
+
+	/**
+	 * Writes this snapshot, replacing the previous one atomically.
+	 *
+	 * @param file the snapshot file.
+	 * @throws IOException if the file could not be written.
+	 */
+	public void write(Path file) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, artistName);
+			writeString(out, artistId);
+			out.writeInt(albumIndex);
+
+			out.writeInt(albums.size());
+			for (Album album : albums) {
+				writeString(out, album.getId());
+				writeString(out, album.getArtistName());
+				writeString(out, album.getAlbumName());
+				writeString(out, album.getCoverImageURL());
+				writeString(out, album.getLargestCoverImageURL());
+
+				List<TrackData> tracks = album.getTracks();
+				out.writeInt(tracks.size());
+				for (TrackData track : tracks) {
+					writeString(out, track.getName());
+					writeString(out, track.getId());
+					out.writeInt(track.getLength());
+					out.writeInt(track.getTrackNumber());
+					writeString(out, track.getPreviewURL());
+				}
+
+				byte[] cover = album.getCoverData();
+				out.writeInt((cover != null) ? cover.length : -1);
+				if (cover != null) {
+					out.write(cover);
+				}
+			}
+		}
+
+		Path parent = file.toAbsolutePath().getParent();
+		Files.createDirectories(parent);
+		Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			CachingTransport.deleteQuietly(temp);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		} else if (length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public String getArtistName() {
+		return artistName;
+	}
+
+	public String getArtistId() {
+		return artistId;
+	}
+
+	/**
+	 * Returns the albums of the artist. Their covers are not loaded, but
+	 * their downloaded data is available if it was when saved.
+	 *
+	 * @return the albums, in the order displayed.
+	 */
+	public List<Album> getAlbums() {
+		return albums;
+	}
+
+	public int getAlbumIndex() {
+		return albumIndex;
+	}
+}
@@ -1,30 +1,40 @@
 package spotifyparser;
 
 import com.sun.javafx.collections.ObservableListWrapper;
-import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.ResourceBundle;
-import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import javafx.application.Platform;
+import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.WeakChangeListener;
 import javafx.collections.ObservableList;
-import javafx.embed.swing.SwingFXUtils;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.geometry.Side;
 import javafx.scene.control.Button;
+import javafx.scene.control.ContextMenu;
 import javafx.scene.control.Label;
+import javafx.scene.control.MenuItem;
 import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.Slider;
+import javafx.scene.control.TableCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
@@ -33,7 +43,6 @@ import javafx.scene.image.ImageView;
 import javafx.scene.media.Media;
 import javafx.scene.media.MediaPlayer;
 import javafx.util.Duration;
-import javax.imageio.ImageIO;
 
 /**
  *
@@ -42,6 +51,12 @@ import javax.imageio.ImageIO;
  */
 public class Controller implements Initializable {
 
+	/**
+	 * Delay after the last keystroke before searching.
+	 */
+	private static final long SEARCH_DEBOUNCE_MILLIS = 300;
+	private static final long IDLE_PREFETCH_MILLIS = 1000;
+
 	@FXML
 	private TableView<TrackData> tracksTableView;
 
@@ -80,23 +95,31 @@ public class Controller implements Initializable {
 	private MediaPlayer mediaPlayer;
 	private final SpotifyAPI controller;
 	private ScheduledExecutorService generalExecutor;
+	private final ExecutorService ioExecutor;
+	private final CoverExporter coverExporter = new CoverExporter(4);
+	private final PreviewCache previewCache = PreviewCache.createDefault();
 
 	private int currentAlbumIndex;
 	private TrackData currentlyPlayed;
-	private final WeakHashMap<TrackData, Button> tablePlayButtons = new WeakHashMap<>();
+	private MediaPlayer preparedPlayer;
+	private TrackData preparedTrack;
+	private final ObjectProperty<TrackData> playingTrack = new SimpleObjectProperty<>();
 	private ScheduledFuture<?> updateSliderTask;
 
+	private ScheduledFuture<?> searchDebounceTask;
+	private ContextMenu suggestions;
+	private ScheduledFuture<?> idlePrefetchTask;
+	private Future<?> searchTask;
+	private String searchQuery;
+	private int searchGeneration;
+
 	private volatile boolean savingImages;
 
 	public Controller() {
 		this.controller = new SpotifyAPI();
+		controller.getMetrics().register("player");
 		this.generalExecutor = Executors.newSingleThreadScheduledExecutor();
-
-		try {
-			controller.authenticate();
-		} catch (IOException ex) {
-			throw new AssertionError(ex);
-		}
+		this.ioExecutor = Executors.newCachedThreadPool(new UrlConnectionTransport.DaemonThreadFactory("controller-io"));
 	}
 
 	private void handlePlayButton(TrackData track) {
@@ -111,7 +134,9 @@ public class Controller implements Initializable {
 		onStopTrack(currentlyPlayed);
 
 		// Simply reset the fields if stopping the preview
-		if (currentlyPlayed == track) {
+		if (Objects.equals(currentlyPlayed, track)) {
+			mediaPlayer.dispose();
+			releasePreview(currentlyPlayed);
 			this.mediaPlayer = null;
 			this.currentlyPlayed = null;
 			return;
@@ -125,20 +150,29 @@ public class Controller implements Initializable {
 	private void playPreview(TrackData track) {
 		if (mediaPlayer != null) {
 			mediaPlayer.stop();
+			mediaPlayer.dispose();
+			releasePreview(currentlyPlayed);
 		}
 
 		// Update buttons
 		playButton.setText("Stop");
-		getTrackPlayButton(track).setText("Stop");
+		playingTrack.set(track);
 
 		// Update slider
 		trackSlider.setValue(0);
 		trackSlider.setDisable(false);
 
-		// Initialize media player
-		Media music = new Media(track.getPreviewURL());
-		mediaPlayer = new MediaPlayer(music);
+		// Initialize media player, reusing the one prepared for this track
+		if (Objects.equals(preparedTrack, track)) {
+			mediaPlayer = preparedPlayer;
+			preparedPlayer = null;
+			preparedTrack = null;
+		} else {
+			retainPreview(track);
+			mediaPlayer = new MediaPlayer(new Media(getPreviewSource(track)));
+		}
 		mediaPlayer.play();
+		prepareNextPreview(track);
 
 		// Handle end of song or stop
 		mediaPlayer.setOnEndOfMedia(() -> onStopTrack(track));
@@ -162,11 +196,119 @@ public class Controller implements Initializable {
 		durationLabel.setText("0:0/" + minutes + ":" + seconds);
 	}
 
+	/**
+	 * Returns the location of a preview, preferring its local copy.
+	 */
+	private String getPreviewSource(TrackData track) {
+		Path local = (previewCache != null) ? previewCache.getCached(track.getPreviewURL()) : null;
+		return (local != null) ? local.toUri().toString() : track.getPreviewURL();
+	}
+
+	/**
+	 * Keeps the local copy of a preview while a player uses it.
+	 */
+	private void retainPreview(TrackData track) {
+		if (previewCache != null && track.hasPreview()) {
+			previewCache.pin(track.getPreviewURL());
+		}
+	}
+
+	private void releasePreview(TrackData track) {
+		if (previewCache != null && track.hasPreview()) {
+			previewCache.unpin(track.getPreviewURL());
+		}
+	}
+
+	/**
+	 * Downloads the previews of a track and of its neighbours in the table.
+	 */
+	private void prefetchPreviews(int index) {
+		List<TrackData> tracks = tracksTableView.getItems();
+		if (previewCache == null || index < 0 || index >= tracks.size()) {
+			return;
+		}
+
+		// The following tracks are more likely to be played next
+		List<TrackData> neighbours = new ArrayList<>(tracks.subList(index, Math.min(tracks.size(), index + 3)));
+		if (index > 0) {
+			neighbours.add(tracks.get(index - 1));
+		}
+		previewCache.prefetch(neighbours);
+	}
+
+	/**
+	 * Prepares the albums around a displayed one, so that moving to the next
+	 * or previous album does not wait for the network or the image decoder:
+	 * their covers are loaded first, and their first previews downloaded.
+	 * The albums two steps away are prepared as well if the user stays on
+	 * the album for a while.
+	 */
+	private void prefetchAdjacentAlbums(int index) {
+		if (idlePrefetchTask != null) {
+			idlePrefetchTask.cancel(false);
+		}
+
+		List<Album> adjacent = new ArrayList<>();
+		List<Album> further = new ArrayList<>();
+		for (int offset : new int[]{1, -1, 2, -2}) {
+			int neighbour = index + offset;
+			if (neighbour >= 0 && neighbour < albums.size()) {
+				(Math.abs(offset) == 1 ? adjacent : further).add(albums.get(neighbour));
+			}
+		}
+
+		adjacent.forEach(this::prefetchAlbum);
+		if (!further.isEmpty()) {
+			idlePrefetchTask = generalExecutor.schedule(() -> further.forEach(this::prefetchAlbum),
+					IDLE_PREFETCH_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void prefetchAlbum(Album album) {
+		controller.prefetchCover(album);
+
+		// The first tracks are the most likely to be played
+		if (previewCache != null) {
+			List<TrackData> tracks = album.getTracks();
+			previewCache.prefetch(tracks.subList(0, Math.min(tracks.size(), 2)));
+		}
+	}
+
+	/**
+	 * Prepares a player for the track following the one being played, so
+	 * that it starts without waiting for the decoder.
+	 */
+	private void prepareNextPreview(TrackData track) {
+		List<TrackData> tracks = tracksTableView.getItems();
+		int index = tracks.indexOf(track);
+		prefetchPreviews(index);
+
+		if (previewCache == null || index < 0 || index + 1 >= tracks.size() || !tracks.get(index + 1).hasPreview()) {
+			return;
+		}
+
+		TrackData next = tracks.get(index + 1);
+		previewCache.fetch(next.getPreviewURL()).thenAccept(path -> executeSync(() -> {
+			// Only if still playing the same track
+			if (!Objects.equals(currentlyPlayed, track) || Objects.equals(preparedTrack, next)) {
+				return;
+			}
+
+			if (preparedPlayer != null) {
+				preparedPlayer.dispose();
+				releasePreview(preparedTrack);
+			}
+			retainPreview(next);
+			preparedPlayer = new MediaPlayer(new Media(path.toUri().toString()));
+			preparedTrack = next;
+		}));
+	}
+
 	private void onStopTrack(TrackData track) {
 		playButton.setText("Play");
 
-		if (track != null) {
-			getTrackPlayButton(track).setText("Play");
+		if (track != null && track.equals(playingTrack.get())) {
+			playingTrack.set(null);
 		}
 
 		if (updateSliderTask != null) {
@@ -177,18 +319,138 @@ public class Controller implements Initializable {
 	}
 
 	private void searchArtist(ActionEvent ae) {
+		searchArtist(searchField.getText());
+	}
+
+	/**
+	 * Searches after the user stopped typing for a short while, or at once
+	 * if the text is the name of a known artist.
+	 */
+	private void scheduleSearch() {
+		if (searchDebounceTask != null) {
+			searchDebounceTask.cancel(false);
+		}
+
+		if (controller.getSearchIndex().findArtistId(searchField.getText()) != null) {
+			searchArtist(searchField.getText());
+			return;
+		}
+
+		searchDebounceTask = generalExecutor.schedule(() -> {
+			executeSync(() -> searchArtist(searchField.getText()));
+		}, SEARCH_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Suggests the known artists whose name completes the text being typed.
+	 */
+	private void showSuggestions(String text) {
+		List<SearchIndex.Entry> artists = controller.getSearchIndex().complete(text, SearchIndex.Kind.ARTIST, 8);
+		if (artists.isEmpty() || !searchField.isFocused()) {
+			suggestions.hide();
+			return;
+		}
+
+		List<MenuItem> items = new ArrayList<>();
+		for (SearchIndex.Entry artist : artists) {
+			MenuItem item = new MenuItem(artist.getName());
+			item.setOnAction(event -> {
+				searchField.setText(artist.getName());
+				searchArtist(artist.getName());
+			});
+			items.add(item);
+		}
+
+		suggestions.getItems().setAll(items);
+		if (!suggestions.isShowing()) {
+			suggestions.show(searchField, Side.BOTTOM, 0, 0);
+		}
+	}
+
+	private void searchArtist(String query) {
+		suggestions.hide();
+		if (searchDebounceTask != null) {
+			searchDebounceTask.cancel(false);
+			searchDebounceTask = null;
+		}
+
+		// Already searching for it
+		query = query.trim();
+		if (query.isEmpty() || (query.equals(searchQuery) && searchTask != null && !searchTask.isDone())) {
+			return;
+		}
+
+		// Abort the previous search, whose results are not wanted anymore
+		if (searchTask != null) {
+			searchTask.cancel(true);
+		}
+
+		int generation = ++searchGeneration;
+		long started = System.nanoTime();
+		String artistQuery = query;
+		this.searchQuery = query;
+
+		// When refreshing the albums displayed, keep them until the new
+		// ones are all retrieved
+		boolean refresh = albums != null && !albums.isEmpty() && query.equalsIgnoreCase(artistName);
+
 		progressIndicator.setVisible(true);
-		executeAsync(() -> {
-			boolean success = loadArtist(searchField.getText());
-			progressIndicator.setVisible(false);
-
-			if (success) {
-				if (!albums.isEmpty()) {
-					// Update display
-					executeSync(() -> displayAlbum(0));
-				} else {
+		searchTask = executeAsync(() -> {
+			try {
+				String artistId = controller.getArtistId(artistQuery);
+				if (artistId == null) {
+					// Could not find artist
+					executeSyncIfCurrent(generation, () -> {
+						progressIndicator.setVisible(false);
+						artistLabel.setText("Error: Artist not found");
+						albumLabel.setText("Try again with another artist");
+						playButton.setDisable(true);
+						nextButton.setDisable(true);
+						previousButton.setDisable(true);
+					});
+					return;
+				}
+
+				// Display the first albums as soon as they arrive,
+				// and append the following ones as they come
+				boolean displayed = false;
+				List<Album> retrieved = new ArrayList<>();
+				try (DiscographyPager pager = controller.getDiscography(artistId)) {
+					while (pager.hasNext()) {
+						List<Album> batch = pager.next();
+						retrieved.addAll(batch);
+						if (batch.isEmpty() || refresh) {
+							continue;
+						}
+
+						if (!displayed) {
+							displayed = true;
+							executeSyncIfCurrent(generation, () -> {
+								this.artistName = artistQuery;
+								this.albums = new ArrayList<>(batch);
+								displayAlbum(0);
+								controller.getMetrics().recordOperation("search", System.nanoTime() - started);
+							});
+						} else {
+							executeSyncIfCurrent(generation, () -> {
+								albums.addAll(batch);
+								nextButton.setDisable(currentAlbumIndex == albums.size() - 1);
+								prefetchAdjacentAlbums(currentAlbumIndex);
+							});
+						}
+					}
+				}
+
+				if (refresh && !retrieved.isEmpty()) {
+					executeSyncIfCurrent(generation, () -> {
+						replaceAlbums(retrieved);
+						controller.getMetrics().recordOperation("refresh", System.nanoTime() - started);
+					});
+				} else if (retrieved.isEmpty()) {
 					// Artist has no album: disable everything
-					executeSync(() -> {
+					executeSyncIfCurrent(generation, () -> {
+						this.artistName = artistQuery;
+						this.albums = new ArrayList<>();
 						artistLabel.setText(artistName);
 						albumLabel.setText("No album for this artist");
 						playButton.setDisable(true);
@@ -196,20 +458,125 @@ public class Controller implements Initializable {
 						previousButton.setDisable(true);
 					});
 				}
-			} else {
-				// Could not find artist
-				executeSync(() -> {
-					artistLabel.setText("Error: Artist not found");
-					albumLabel.setText("Try again with another artist");
-					playButton.setDisable(true);
-					nextButton.setDisable(true);
-					previousButton.setDisable(true);
+
+				executeSyncIfCurrent(generation, () -> {
+					progressIndicator.setVisible(false);
+					saveSnapshot(artistId);
 				});
+			} catch (InterruptedIOException ex) {
+				// Superseded by another search
+			} catch (IOException | RuntimeException | AssertionError ex) {
+				// Malformed responses are reported as AssertionError, which
+				// would otherwise be lost in the executor
+				System.err.println("Could not load the albums of " + artistQuery);
+				ex.printStackTrace(System.err);
+				executeSyncIfCurrent(generation, () -> onSearchFailed(artistQuery));
 			}
-
 		});
 	}
 
+	/**
+	 * Stops waiting for a search which failed. The albums displayed are kept
+	 * if they are of the same artist, such as when refreshing them.
+	 */
+	private void onSearchFailed(String query) {
+		progressIndicator.setVisible(false);
+		if (albums != null && !albums.isEmpty() && query.equalsIgnoreCase(artistName)) {
+			return;
+		}
+
+		artistLabel.setText("Error: Could not load the albums");
+		albumLabel.setText("Check your connection and try again");
+		playButton.setDisable(true);
+		nextButton.setDisable(true);
+		previousButton.setDisable(true);
+	}
+
+	/**
+	 * Replaces the albums displayed by the same albums retrieved again,
+	 * staying on the album displayed.
+	 */
+	private void replaceAlbums(List<Album> refreshed) {
+		String displayedId = albums.get(currentAlbumIndex).getId();
+		int index = 0;
+		for (int i = 0; i < refreshed.size(); ++i) {
+			if (refreshed.get(i).getId().equals(displayedId)) {
+				index = i;
+				break;
+			}
+		}
+
+		this.albums = new ArrayList<>(refreshed);
+		if (currentlyPlayed == null) {
+			displayAlbum(index);
+		} else {
+			// Do not interrupt the preview being played
+			this.currentAlbumIndex = index;
+			previousButton.setDisable(currentAlbumIndex == 0);
+			nextButton.setDisable(currentAlbumIndex == albums.size() - 1);
+		}
+	}
+
+	/**
+	 * Shows the albums of the last session, before any request.
+	 *
+	 * @return true if there were albums to show.
+	 */
+	private boolean restoreSnapshot() {
+		long started = System.nanoTime();
+		CatalogSnapshot snapshot;
+		try {
+			snapshot = CatalogSnapshot.read(CatalogSnapshot.getDefaultPath());
+		} catch (IOException ex) {
+			System.err.println("Could not read the snapshot of the last session");
+			ex.printStackTrace(System.err);
+			return false;
+		}
+
+		if (snapshot == null || snapshot.getAlbums().isEmpty()) {
+			return false;
+		}
+
+		// Searching the same artist again needs no request
+		if (snapshot.getArtistId() != null) {
+			controller.getSearchIndex().addArtist(new Artist(snapshot.getArtistId(), snapshot.getArtistName()));
+		}
+
+		this.artistName = snapshot.getArtistName();
+		this.albums = new ArrayList<>(snapshot.getAlbums());
+		displayAlbum(Math.max(0, Math.min(snapshot.getAlbumIndex(), albums.size() - 1)));
+
+		// Every cover is needed to save them, not only the ones displayed
+		albums.forEach(controller::loadCover);
+		controller.getMetrics().recordOperation("restore snapshot", System.nanoTime() - started);
+		return true;
+	}
+
+	/**
+	 * Saves the albums displayed for the next session, once their covers are
+	 * loaded.
+	 */
+	private void saveSnapshot(String artistId) {
+		if (albums == null || albums.isEmpty()) {
+			return;
+		}
+
+		List<Album> saved = new ArrayList<>(albums);
+		CatalogSnapshot snapshot = new CatalogSnapshot(artistName, artistId, saved, currentAlbumIndex);
+		CompletableFuture<?>[] covers = saved.stream().map(Album::getCover).toArray(CompletableFuture<?>[]::new);
+
+		// Failed covers are simply not saved
+		CompletableFuture.allOf(covers).handleAsync((v, ex) -> {
+			try {
+				snapshot.write(CatalogSnapshot.getDefaultPath());
+			} catch (IOException writeEx) {
+				System.err.println("Could not save the snapshot of this session");
+				writeEx.printStackTrace(System.err);
+			}
+			return null;
+		}, ioExecutor);
+	}
+
 	private void previousAlbum(ActionEvent ae) {
 		displayAlbum(--currentAlbumIndex);
 	}
@@ -224,72 +591,44 @@ public class Controller implements Initializable {
 
 		savingImages = true;
 		progressIndicator.setVisible(true);
-		executeAsync(() -> {
-			for (Album album : albums) {
-				// Ensure the path exists
-
-				// Replace special characters 
-				String name = album.getAlbumName().replaceAll("[:/^.\\*?\"<>|]", " ");
-				File path = new File("./images/" + artistName + "/" + name + ".png");
-				if (!path.getParentFile().isDirectory()) {
-					try {
-						path.mkdirs();
-					} catch (SecurityException se) {
-						// Skip if could not create folder
-						System.err.println("Could not create folder " + path.getAbsolutePath());
-						se.printStackTrace(System.err);
-						continue;
-					}
-				}
-
-				// Write file
-				Image image = album.getCoverImage();
-				BufferedImage bufferedImage = SwingFXUtils.fromFXImage(image, null);
-				try {
-					ImageIO.write(bufferedImage, "png", path);
-				} catch (IOException ex) {
-					System.err.println("Could not save image " + path.getAbsolutePath());
-					ex.printStackTrace(System.err);
-				}
 
+		// Albums may still be appended while saving
+		List<Album> savedAlbums = new ArrayList<>(albums);
+		String savedArtist = artistName;
+		executeAsync(() -> {
+			try {
+				CoverExporter.Result result = coverExporter.export(savedAlbums, Paths.get("images", savedArtist),
+						(done, total) -> executeSync(() -> progressIndicator.setProgress((double) done / total)));
+				controller.getMetrics().recordOperation("save covers", result.getElapsed(TimeUnit.NANOSECONDS));
+
+				System.out.printf("Saved album images for %s: %d written, %d unchanged, %d failed in %d ms (%.1f KB/s)%n",
+						savedArtist, result.getWrittenCount(), result.getUnchangedCount(), result.getFailedCount(),
+						result.getElapsed(TimeUnit.MILLISECONDS), result.getThroughput() / 1024);
+			} catch (IOException ex) {
+				System.err.println("Could not save album images for " + savedArtist);
+				ex.printStackTrace(System.err);
+			} finally {
+				executeSync(() -> {
+					progressIndicator.setVisible(false);
+					progressIndicator.setProgress(ProgressIndicator.INDETERMINATE_PROGRESS);
+				});
+				savingImages = false;
 			}
-
-			executeSync(() -> progressIndicator.setVisible(false));
-			savingImages = false;
-
-			System.out.println("Saved album images for " + artistName);
-
 		});
 
 	}
 
-	private boolean loadArtist(String artistName) {
-		try {
-			String artistId = controller.getArtistId(artistName);
-			if (artistId == null) {
-				this.artistName = "";
-				this.albums = new ArrayList<>();
-				return false;
-			}
-
-			List<String> albumIds = controller.getAlbumIds(artistId);
-			List<Album> data = controller.getAlbumsData(albumIds);
-
-			this.artistName = artistName;
-			this.albums = data;
-			return true;
-		} catch (IOException ex) {
-			throw new AssertionError(ex);
-		}
-	}
-
 	private void displayAlbum(int number) {
 		// Update data
 		this.currentAlbumIndex = number;
 		Album album = albums.get(number);
 
 		// Set tracks
-		tracksTableView.setItems(new ObservableListWrapper(album.getTracks()));
+		// Tracks are views created on access, so they are compared with
+		// equals() while playing
+		tracksTableView.setItems(new ObservableListWrapper(new ArrayList<>(album.getTracks())));
+		prefetchPreviews(0);
+		prefetchAdjacentAlbums(number);
 
 		// Setup slider
 		trackSlider.setValue(0.0);
@@ -299,8 +638,16 @@ public class Controller implements Initializable {
 		artistLabel.setText(this.artistName);
 		albumLabel.setText(album.getAlbumName());
 
-		// Update album cover
+		// Update album cover, once loaded if it is still loading
 		albumCoverImageView.setImage(album.getCoverImage());
+		if (!album.getCover().isDone()) {
+			controller.prefetchCover(album);
+			album.getCover().thenAccept(image -> executeSync(() -> {
+				if (currentAlbumIndex < albums.size() && albums.get(currentAlbumIndex) == album) {
+					albumCoverImageView.setImage(image);
+				}
+			}));
+		}
 
 		// Enable or disable the buttons
 		previousButton.setDisable(currentAlbumIndex == 0);
@@ -309,6 +656,8 @@ public class Controller implements Initializable {
 
 	@Override
 	public void initialize(URL url, ResourceBundle rb) {
+		// Only download and decode covers at the size they are displayed
+		controller.setCoverSize((int) albumCoverImageView.getFitWidth());
 
 		// Setup Table View
 		TableColumn<TrackData, Number> trackNumberColumn = new TableColumn("#");
@@ -318,13 +667,19 @@ public class Controller implements Initializable {
 		trackTitleColumn.setCellValueFactory(p -> new SimpleObjectProperty<>(p.getValue().getName()));
 		trackTitleColumn.setPrefWidth(250);
 
-		TableColumn<TrackData, Button> playColumn = new TableColumn("Preview");
-		playColumn.setCellValueFactory(p -> new ReadOnlyObjectWrapper<>(getTrackPlayButton(p.getValue())));
+		TableColumn<TrackData, TrackData> playColumn = new TableColumn("Preview");
+		playColumn.setCellValueFactory(p -> new ReadOnlyObjectWrapper<>(p.getValue()));
+		playColumn.setCellFactory(column -> new PlayButtonCell());
 		tracksTableView.getColumns().setAll(trackNumberColumn, trackTitleColumn, playColumn);
 
 		trackNumberColumn.setPrefWidth(30);
 		trackTitleColumn.setMaxWidth(230);
 
+		// Download the previews likely to be played next
+		tracksTableView.getSelectionModel().selectedIndexProperty().addListener((observable, oldIndex, newIndex) -> {
+			prefetchPreviews(newIndex.intValue());
+		});
+
 		// When slider is released, we must seek in the song
 		trackSlider.setOnMouseReleased(event -> {
 			if (mediaPlayer != null) {
@@ -337,6 +692,11 @@ public class Controller implements Initializable {
 		nextButton.setOnAction(this::nextAlbum);
 		previousButton.setOnAction(this::previousAlbum);
 		searchField.setOnAction(this::searchArtist);
+		suggestions = new ContextMenu();
+		searchField.textProperty().addListener((observable, oldText, newText) -> {
+			showSuggestions(newText);
+			scheduleSearch();
+		});
 
 		playButton.setOnAction(ea -> {
 			ObservableList<TrackData> selected = tracksTableView.getSelectionModel().getSelectedItems();
@@ -345,7 +705,7 @@ public class Controller implements Initializable {
 			if (currentlyPlayed != null) {
 				track = currentlyPlayed;
 			} else if (selected.isEmpty()) {
-				track = albums.get(currentAlbumIndex).getTracks().get(0);
+				track = tracksTableView.getItems().get(0);
 				tracksTableView.getSelectionModel().clearAndSelect(track.getTrackNumber() - 1);
 			} else {
 				track = selected.get(0);
@@ -354,38 +714,75 @@ public class Controller implements Initializable {
 			handlePlayButton(track);
 		});
 
-		// Initialize GUI
-		if (loadArtist("Kurt Elling") && !albums.isEmpty()) {
-			executeSync(() -> displayAlbum(0));
+		// Initialize GUI without waiting for the network: show the last
+		// session at once, then refresh it in the background
+		executeAsync(() -> {
+			try {
+				controller.authenticate();
+			} catch (IOException ex) {
+				// Retried on the first request
+				System.err.println("Could not authenticate");
+				ex.printStackTrace(System.err);
+			}
+		});
+
+		if (restoreSnapshot()) {
+			searchArtist(artistName);
+		} else {
+			searchArtist("Kurt Elling");
 		}
 
 	}
 
-	private void executeAsync(Runnable r) {
-		generalExecutor.schedule(r, 0, TimeUnit.SECONDS);
+	private Future<?> executeAsync(Runnable r) {
+		return ioExecutor.submit(r);
 	}
 
 	private void executeSync(Runnable r) {
 		Platform.runLater(r);
 	}
 
-	private Button getTrackPlayButton(TrackData track) {
-		Button button = tablePlayButtons.get(track);
-		if (button != null) {
-			return button;
+	/**
+	 * Runs on the JavaFX thread, unless another search was started since.
+	 */
+	private void executeSyncIfCurrent(int generation, Runnable r) {
+		executeSync(() -> {
+			if (generation == searchGeneration) {
+				r.run();
+			}
+		});
+	}
+
+	/**
+	 * A cell of the preview column. Cells are recycled by the table while
+	 * scrolling, so each one keeps a single button and shows the state of
+	 * whichever track it currently displays.
+	 */
+	private class PlayButtonCell extends TableCell<TrackData, TrackData> {
+
+		private final Button button = new Button("Play");
+
+		// Held by the cell, so that cells discarded by the table can be
+		// collected despite the property outliving them
+		private final ChangeListener<TrackData> playingListener = (observable, oldTrack, newTrack) -> updateButton();
+
+		PlayButtonCell() {
+			button.setOnAction(event -> handlePlayButton(getItem()));
+			playingTrack.addListener(new WeakChangeListener<>(playingListener));
 		}
 
-		button = new Button("Play");
-		if (track == null || !track.hasPreview()) {
-			button.setDisable(true);
-		} else {
-			button.setDisable(false);
-			button.setOnAction(event -> {
-				handlePlayButton(track);
-			});
+		@Override
+		protected void updateItem(TrackData track, boolean empty) {
+			super.updateItem(track, empty);
+			setText(null);
+			setGraphic((empty || track == null) ? null : button);
+			updateButton();
 		}
 
-		tablePlayButtons.put(track, button);
-		return button;
+		private void updateButton() {
+			TrackData track = getItem();
+			button.setDisable(track == null || !track.hasPreview());
+			button.setText((track != null && track.equals(playingTrack.get())) ? "Stop" : "Play");
+		}
 	}
 }
@@ -0,0 +1,280 @@
+package spotifyparser;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Saves album covers to disk at their largest size, exactly as downloaded.
+ * Covers displayed at that size are not downloaded again. Files are written
+ * concurrently on a bounded pool of threads, and files which already hold the
+ * same content are left untouched, so that exporting an artist again only
+ * writes the covers which changed.
+ */
+public class CoverExporter {
+
+	private final HttpTransport transport;
+	private final ExecutorService executor;
+
+	/**
+	 * Creates a cover exporter downloading covers directly.
+	 *
+	 * @param threads the number of covers saved concurrently.
+	 */
+	public CoverExporter(int threads) {
+		this(UrlConnectionTransport.SHARED, threads);
+	}
+
+	/**
+	 * Creates a cover exporter.
+	 *
+	 * @param transport the transport used to download the covers.
+	 * @param threads the number of covers saved concurrently.
+	 */
+	public CoverExporter(HttpTransport transport, int threads) {
+		this.transport = transport;
+		this.executor = Executors.newFixedThreadPool(threads, new UrlConnectionTransport.DaemonThreadFactory("cover-export"));
+	}
+
+	/**
+	 * Saves the covers of some albums in a directory, each one named after its
+	 * album. Blocks until every cover is downloaded and saved. Albums whose
+	 * cover could not be downloaded or saved are reported on the standard
+	 * error stream and skipped.
+	 *
+	 * @param albums the albums whose cover to save.
+	 * @param directory the directory in which to save the covers. Created if
+	 * it does not exist.
+	 * @param listener notified after each album, on the thread saving it. May
+	 * be null.
+	 * @return the outcome of the export.
+	 * @throws IOException if the directory could not be created, or if the
+	 * calling thread was interrupted.
+	 */
+	public Result export(List<Album> albums, Path directory, ProgressListener listener) throws IOException {
+		Files.createDirectories(directory);
+
+		long start = System.nanoTime();
+		AtomicInteger done = new AtomicInteger();
+		Result result = new Result();
+
+		List<CompletableFuture<Void>> tasks = new ArrayList<>(albums.size());
+		for (Album album : albums) {
+			tasks.add(CompletableFuture.runAsync(() -> {
+				save(album, directory, result);
+				if (listener != null) {
+					listener.progress(done.incrementAndGet(), albums.size());
+				}
+			}, executor));
+		}
+
+		try {
+			for (CompletableFuture<Void> task : tasks) {
+				Futures.await(task);
+			}
+		} finally {
+			// Skip the albums not started yet if interrupted
+			tasks.forEach(t -> t.cancel(false));
+		}
+
+		result.elapsed = System.nanoTime() - start;
+		return result;
+	}
+
+	private void save(Album album, Path directory, Result result) {
+		String url = album.getLargestCoverImageURL();
+		if (url == null) {
+			return;
+		}
+
+		// Reuse the cover displayed if it is the largest one
+		byte[] data = url.equals(album.getCoverImageURL()) ? album.getCoverData() : null;
+		if (data == null) {
+			try {
+				data = CoverLoader.download(transport, url);
+			} catch (InterruptedIOException ex) {
+				return;
+			} catch (IOException ex) {
+				System.err.println("Could not download image for " + album.getAlbumName());
+				ex.printStackTrace(System.err);
+				result.failed.incrementAndGet();
+				return;
+			}
+		}
+
+		// Replace special characters
+		String name = album.getAlbumName().replaceAll("[:/^.\\*?\"<>|]", " ");
+		Path path = directory.resolve(name + extensionOf(data));
+
+		try {
+			if (hasContent(path, data)) {
+				result.unchanged.incrementAndGet();
+				return;
+			}
+
+			// Write in a temporary file first, since several albums
+			// may have the same name
+			Path temp = Files.createTempFile(directory, ".cover", ".tmp");
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				ByteBuffer buffer = ByteBuffer.wrap(data);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			} catch (IOException ex) {
+				Files.deleteIfExists(temp);
+				throw ex;
+			}
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			result.written.incrementAndGet();
+			result.bytes.addAndGet(data.length);
+		} catch (IOException ex) {
+			System.err.println("Could not save image " + path.toAbsolutePath());
+			ex.printStackTrace(System.err);
+			result.failed.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Checks whether a file already holds some content, comparing digests
+	 * only when the sizes are equal.
+	 */
+	private static boolean hasContent(Path path, byte[] data) throws IOException {
+		if (!Files.isRegularFile(path) || Files.size(path) != data.length) {
+			return false;
+		}
+
+		MessageDigest existing = sha1();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate(8192);
+			while (channel.read(buffer) != -1) {
+				buffer.flip();
+				existing.update(buffer);
+				buffer.clear();
+			}
+		}
+
+		return Arrays.equals(existing.digest(), sha1().digest(data));
+	}
+
+	private static MessageDigest sha1() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException ex) {
+			// Every Java platform supports SHA-1
+			throw new AssertionError(ex);
+		}
+	}
+
+	/**
+	 * Guesses the file extension of an image from its first bytes.
+	 */
+	private static String extensionOf(byte[] data) {
+		if (data.length >= 3 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xD8 && (data[2] & 0xFF) == 0xFF) {
+			return ".jpg";
+		} else if (data.length >= 4 && (data[0] & 0xFF) == 0x89 && data[1] == 'P' && data[2] == 'N' && data[3] == 'G') {
+			return ".png";
+		} else if (data.length >= 4 && data[0] == 'R' && data[1] == 'I' && data[2] == 'F' && data[3] == 'F') {
+			return ".webp";
+		}
+
+		return ".img";
+	}
+
+	/**
+	 * Receives the progress of an export.
+	 */
+	public interface ProgressListener {
+
+		/**
+		 * Called after each album.
+		 *
+		 * @param done the number of albums processed so far.
+		 * @param total the number of albums to process.
+		 */
+		void progress(int done, int total);
+	}
+
+	/**
+	 * The outcome of an export.
+	 */
+	public static class Result {
+
+		private final AtomicInteger written = new AtomicInteger();
+		private final AtomicInteger unchanged = new AtomicInteger();
+		private final AtomicInteger failed = new AtomicInteger();
+		private final AtomicLong bytes = new AtomicLong();
+		private long elapsed;
+
+		/**
+		 * Returns the number of covers written.
+		 *
+		 * @return the number of files created or replaced.
+		 */
+		public int getWrittenCount() {
+			return written.get();
+		}
+
+		/**
+		 * Returns the number of covers which were already saved.
+		 *
+		 * @return the number of files left untouched.
+		 */
+		public int getUnchangedCount() {
+			return unchanged.get();
+		}
+
+		/**
+		 * Returns the number of covers which could not be downloaded or saved.
+		 *
+		 * @return the number of failures.
+		 */
+		public int getFailedCount() {
+			return failed.get();
+		}
+
+		/**
+		 * Returns the number of bytes written.
+		 *
+		 * @return the total size of the written files.
+		 */
+		public long getBytesWritten() {
+			return bytes.get();
+		}
+
+		/**
+		 * Returns the duration of the export.
+		 *
+		 * @param unit the unit of the result.
+		 * @return the time elapsed between the start and the end of the export.
+		 */
+		public long getElapsed(TimeUnit unit) {
+			return unit.convert(elapsed, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Returns the write throughput of the export.
+		 *
+		 * @return the number of bytes written per second.
+		 */
+		public double getThroughput() {
+			return (elapsed > 0) ? bytes.get() * 1e9 / elapsed : 0;
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package spotifyparser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javafx.scene.image.Image;
+
+/**
+ * Downloads and decodes album covers in the background, on a bounded pool of
+ * threads. Covers are decoded directly at the size they are displayed at,
+ * and the downloaded bytes are kept so that they can be exported as is.
+ * Covers about to be displayed may be moved ahead of the others with
+ * {@link #loadFirst(Album)}.
+ */
+public class CoverLoader {
+
+	private final HttpTransport transport;
+	private final ApiMetrics metrics;
+	private final LinkedBlockingDeque<Runnable> queue = new LinkedBlockingDeque<>();
+	private final ThreadPoolExecutor executor;
+	private final Map<Album, Runnable> queued = new ConcurrentHashMap<>();
+	private volatile int size;
+
+	/**
+	 * Creates a cover loader.
+	 *
+	 * @param transport the transport used to download the covers.
+	 * @param metrics the metrics recording download and decode times.
+	 * @param threads the number of covers loaded concurrently.
+	 * @param size the initial width and height at which covers are displayed,
+	 * in pixels.
+	 */
+	public CoverLoader(HttpTransport transport, ApiMetrics metrics, int threads, int size) {
+		this.transport = transport;
+		this.metrics = metrics;
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue,
+				new UrlConnectionTransport.DaemonThreadFactory("spotify-cover"));
+		this.size = size;
+
+		// Tasks may be queued directly, so every thread must be running
+		executor.prestartAllCoreThreads();
+	}
+
+	/**
+	 * Starts loading the cover of an album, unless it was already requested.
+	 * The result is available through {@link Album#getCover()}.
+	 *
+	 * @param album the album.
+	 */
+	public void load(Album album) {
+		Runnable task = createTask(album);
+		if (task != null) {
+			executor.execute(task);
+		}
+	}
+
+	/**
+	 * Loads the cover of an album before every other cover waiting to be
+	 * loaded, whether it was already requested or not.
+	 *
+	 * @param album the album, typically about to be displayed.
+	 */
+	public void loadFirst(Album album) {
+		Runnable task = createTask(album);
+		if (task != null) {
+			queue.offerFirst(task);
+		} else {
+			// Move it ahead if still waiting
+			task = queued.get(album);
+			if (task != null && queue.remove(task)) {
+				queue.offerFirst(task);
+			}
+		}
+	}
+
+	/**
+	 * Creates the task loading the cover of an album.
+	 *
+	 * @return the task, or null if the cover was already requested or if
+	 * there is none.
+	 */
+	private Runnable createTask(Album album) {
+		if (!album.requestCover()) {
+			return null;
+		}
+
+		if (album.getCoverImageURL() == null) {
+			album.getCover().complete(null);
+			return null;
+		}
+
+		int imageSize = size;
+		Runnable task = () -> {
+			queued.remove(album);
+			try {
+				// Covers restored from a snapshot only need decoding
+				byte[] data = album.getCoverData();
+				if (data == null) {
+					long start = System.nanoTime();
+					data = download(transport, album.getCoverImageURL());
+					album.setCoverData(data);
+					metrics.recordCoverDownload(System.nanoTime() - start, data.length);
+				}
+
+				Object event = metrics.beginCoverDecode();
+				long start = System.nanoTime();
+				Image image = new Image(new ByteArrayInputStream(data), imageSize, imageSize, true, true);
+				metrics.recordCoverDecode(event, album.getCoverImageURL(), System.nanoTime() - start, data.length);
+				if (image.isError()) {
+					Exception cause = image.getException();
+					album.getCover().completeExceptionally((cause != null) ? cause
+							: new IOException("Could not load cover " + album.getCoverImageURL()));
+				} else {
+					album.getCover().complete(image);
+				}
+			} catch (IOException | RuntimeException ex) {
+				album.getCover().completeExceptionally(ex);
+			}
+		};
+
+		queued.put(album, task);
+		return task;
+	}
+
+	/**
+	 * Downloads a cover as is.
+	 */
+	static byte[] download(HttpTransport transport, String url) throws IOException {
+		try (ApiResponse response = transport.send(ApiRequest.get(url))) {
+			if (response.getStatusCode() != 200) {
+				throw new HttpStatusException(response.getStatusCode(), "Could not load cover " + url);
+			}
+
+			ByteArrayOutputStream data = new ByteArrayOutputStream();
+			InputStream in = response.getBody();
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				data.write(buffer, 0, n);
+			}
+			return data.toByteArray();
+		}
+	}
+
+	/**
+	 * Returns the size at which covers are decoded.
+	 *
+	 * @return the width and height, in pixels.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Sets the size at which the covers loaded from now on are decoded.
+	 *
+	 * @param size the width and height, in pixels.
+	 */
+	public void setSize(int size) {
+		this.size = size;
+	}
+}
@@ -0,0 +1,282 @@
+package spotifyparser;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves a list of artists without any user interface, and writes their
+ * discographies as newline-delimited JSON, one artist per line. Artists are
+ * resolved concurrently, and each line is written as soon as its artist is
+ * resolved.
+ * <p>
+ * The output file also serves as checkpoint: when run again with the same
+ * output, artists already written are skipped, and a line left incomplete by
+ * an interruption is discarded. Artists which could not be resolved are only
+ * reported, so that they are retried on the next run.
+ * <p>
+ * Usage: {@code java -cp SpotifyParser.jar spotifyparser.Crawler
+ * <artists file> <output file> [parallelism]}, where the artists file holds
+ * one artist name per line.
+ */
+public class Crawler {
+
+	private static final long REPORT_PERIOD_SECONDS = 5;
+
+	private final SpotifyAPI api;
+	private final int parallelism;
+
+	private final AtomicLong artists = new AtomicLong();
+	private final AtomicLong albums = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+
+	/**
+	 * Creates a crawler.
+	 *
+	 * @param api the API used to resolve artists. Its covers should not be
+	 * loaded.
+	 * @param parallelism the number of artists resolved concurrently.
+	 */
+	public Crawler(SpotifyAPI api, int parallelism) {
+		this.api = api;
+		this.parallelism = parallelism;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 2) {
+			System.err.println("Usage: Crawler <artists file> <output file> [parallelism]");
+			System.exit(2);
+		}
+
+		int parallelism = (args.length > 2) ? Integer.parseInt(args[2]) : 8;
+
+		SpotifyAPI api = new SpotifyAPI();
+		api.setLoadCovers(false);
+		// Decoding is the bottleneck once many artists are resolved at once
+		api.setParsePool(ForkJoinPool.commonPool());
+		api.getMetrics().register("crawler");
+		api.authenticate();
+
+		new Crawler(api, parallelism).crawl(Paths.get(args[0]), Paths.get(args[1]));
+	}
+
+	/**
+	 * Resolves every artist of a file, skipping those already in the output.
+	 * Blocks until every artist is resolved.
+	 *
+	 * @param input the file listing the artists, one per line. Blank lines
+	 * and lines starting with {@code #} are ignored.
+	 * @param output the file to which results are appended.
+	 * @throws IOException if a file could not be read or written.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public void crawl(Path input, Path output) throws IOException, InterruptedException {
+		Set<String> done = readCheckpoint(output);
+		if (!done.isEmpty()) {
+			System.out.println("Resuming after " + done.size() + " artists");
+		}
+
+		ExecutorService workers = Executors.newFixedThreadPool(parallelism, new UrlConnectionTransport.DaemonThreadFactory("crawler"));
+		ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(new UrlConnectionTransport.DaemonThreadFactory("crawler-report"));
+		long start = System.nanoTime();
+		reporter.scheduleAtFixedRate(new Reporter(), REPORT_PERIOD_SECONDS, REPORT_PERIOD_SECONDS, TimeUnit.SECONDS);
+
+		// Only read artists as fast as they are resolved
+		Semaphore queued = new Semaphore(parallelism * 2);
+		try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+				Writer out = Files.newBufferedWriter(output, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				String query = line.trim();
+				if (query.isEmpty() || query.startsWith("#") || !done.add(query)) {
+					continue;
+				}
+
+				queued.acquire();
+				workers.execute(() -> {
+					try {
+						resolve(query, out);
+					} finally {
+						queued.release();
+					}
+				});
+			}
+
+			workers.shutdown();
+			workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} finally {
+			workers.shutdownNow();
+			reporter.shutdownNow();
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("Done: %d artists, %d albums, %d failed in %.1f s%n",
+				artists.get(), albums.get(), failed.get(), seconds);
+	}
+
+	private void resolve(String query, Writer out) {
+		long start = System.nanoTime();
+		try {
+			String artistId = api.getArtistId(query);
+			List<Album> discography = (artistId != null) ? api.getAlbumsData(api.getAlbumIds(artistId)) : null;
+
+			String json = toJson(query, artistId, discography);
+			synchronized (out) {
+				out.write(json);
+				out.write('\n');
+				out.flush();
+			}
+
+			api.getMetrics().recordOperation("crawl artist", System.nanoTime() - start);
+			artists.incrementAndGet();
+			if (discography != null) {
+				albums.addAndGet(discography.size());
+			}
+		} catch (IOException | RuntimeException ex) {
+			failed.incrementAndGet();
+			System.err.println("Could not resolve artist " + query + ": " + ex);
+		}
+	}
+
+	private static String toJson(String query, String artistId, List<Album> discography) throws IOException {
+		StringWriter buffer = new StringWriter();
+		try (JsonWriter json = new JsonWriter(buffer)) {
+			json.beginObject();
+			json.name("query").value(query);
+			json.name("artistId").value(artistId);
+
+			json.name("albums").beginArray();
+			if (discography != null) {
+				for (Album album : discography) {
+					json.beginObject();
+					json.name("id").value(album.getId());
+					json.name("name").value(album.getAlbumName());
+					json.name("artist").value(album.getArtistName());
+					json.name("cover").value(album.getCoverImageURL());
+
+					json.name("tracks").beginArray();
+					for (TrackData track : album.getTracks()) {
+						json.beginObject();
+						json.name("id").value(track.getId());
+						json.name("name").value(track.getName());
+						json.name("trackNumber").value(track.getTrackNumber());
+						json.name("length").value(track.getLength());
+						json.name("previewURL").value(track.getPreviewURL());
+						json.endObject();
+					}
+					json.endArray();
+
+					json.endObject();
+				}
+			}
+			json.endArray();
+
+			json.endObject();
+		}
+		return buffer.toString();
+	}
+
+	/**
+	 * Reads the artists already written to the output, and truncates the
+	 * output after its last complete line.
+	 */
+	private static Set<String> readCheckpoint(Path output) throws IOException {
+		Set<String> done = new HashSet<>();
+		if (!Files.exists(output)) {
+			return done;
+		}
+
+		long valid = 0;
+		try (BufferedReader in = Files.newBufferedReader(output, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				String query = readQuery(line);
+				if (query == null) {
+					break;
+				}
+
+				done.add(query);
+				valid += line.getBytes(StandardCharsets.UTF_8).length + 1;
+			}
+		}
+
+		try (FileChannel channel = FileChannel.open(output, StandardOpenOption.WRITE)) {
+			if (channel.size() > valid) {
+				System.err.println("Discarding incomplete output after byte " + valid);
+				channel.truncate(valid);
+			} else if (channel.size() < valid) {
+				// The last line was written without its line break
+				channel.write(ByteBuffer.wrap(new byte[]{'\n'}), channel.size());
+			}
+		}
+
+		return done;
+	}
+
+	/**
+	 * Reads the artist of an output line.
+	 *
+	 * @return the artist, or null if the line is incomplete.
+	 */
+	private static String readQuery(String line) {
+		String query = null;
+		try (JsonReader reader = new JsonReader(new StringReader(line))) {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (reader.nextName().equals("query")) {
+					query = reader.nextString();
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			return query;
+		} catch (IOException | IllegalStateException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Prints the throughput over the last period.
+	 */
+	private class Reporter implements Runnable {
+
+		private long lastArtists;
+		private long lastAlbums;
+
+		@Override
+		public void run() {
+			long currentArtists = artists.get();
+			long currentAlbums = albums.get();
+
+			System.out.printf("%d artists (%.1f/s), %d albums (%.1f/s), %d failed%n",
+					currentArtists, (currentArtists - lastArtists) / (double) REPORT_PERIOD_SECONDS,
+					currentAlbums, (currentAlbums - lastAlbums) / (double) REPORT_PERIOD_SECONDS,
+					failed.get());
+
+			lastArtists = currentArtists;
+			lastAlbums = currentAlbums;
+		}
+	}
+}
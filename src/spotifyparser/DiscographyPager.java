@@ -0,0 +1,167 @@
+package spotifyparser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Iterates over the albums of an artist, one batch at a time. Album ID pages
+ * are followed through their {@code next} links, and the following page is
+ * requested while the albums of the current one are fetched. Batches are
+ * delivered in discography order as soon as each one is available, so the
+ * first albums can be shown before the rest of the discography is known.
+ *
+ * @see SpotifyAPI#getDiscography(java.lang.String)
+ */
+public class DiscographyPager implements Closeable {
+
+	/**
+	 * Number of batches fetched ahead of the consumer.
+	 */
+	private static final int PREFETCHED_BATCHES = 4;
+
+	private static final Object END = new Object();
+
+	private final SpotifyAPI api;
+	private final String artistId;
+	private final BlockingQueue<Object> batches = new LinkedBlockingQueue<>(PREFETCHED_BATCHES);
+	private final Future<?> producer;
+
+	private Object head;
+
+	DiscographyPager(SpotifyAPI api, String artistId, ExecutorService executor) {
+		this.api = api;
+		this.artistId = artistId;
+		this.producer = executor.submit(this::produce);
+	}
+
+	/**
+	 * Checks whether another batch of albums is available, waiting for it to
+	 * be fetched if needed.
+	 *
+	 * @return true if {@link #next()} will return a batch.
+	 * @throws IOException if fetching the discography failed.
+	 */
+	public boolean hasNext() throws IOException {
+		if (head == null) {
+			try {
+				head = batches.take();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for albums");
+			}
+		}
+
+		if (head instanceof IOException) {
+			throw (IOException) head;
+		} else if (head instanceof RuntimeException) {
+			throw (RuntimeException) head;
+		} else if (head instanceof Error) {
+			throw (Error) head;
+		} else if (head instanceof Throwable) {
+			throw new IOException((Throwable) head);
+		}
+
+		return head != END;
+	}
+
+	/**
+	 * Returns the next batch of albums, waiting for it to be fetched if
+	 * needed.
+	 *
+	 * @return the albums of the batch, in discography order. May be empty.
+	 * @throws IOException if fetching the discography failed.
+	 * @throws NoSuchElementException if there are no more albums.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Album> next() throws IOException {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		List<Album> batch = (List<Album>) head;
+		head = null;
+		return batch;
+	}
+
+	/**
+	 * Stops fetching the discography.
+	 */
+	@Override
+	public void close() {
+		producer.cancel(true);
+	}
+
+	private void produce() {
+		CompletableFuture<Page<String>> nextPage = null;
+		try {
+			List<String> cachedIds = api.getAlbumIdsCache().get(artistId);
+			if (cachedIds != null) {
+				emitAlbums(cachedIds);
+			} else {
+				List<String> allIds = new ArrayList<>();
+				nextPage = api.getAlbumIdPageAsync(api.getAlbumIdsURL(artistId));
+
+				while (nextPage != null) {
+					Page<String> page = Futures.await(nextPage);
+
+					// Prefetch the following page while this one is processed
+					nextPage = (page.getNext() != null) ? api.getAlbumIdPageAsync(page.getNext()) : null;
+
+					allIds.addAll(page.getItems());
+					emitAlbums(page.getItems());
+				}
+
+				api.getAlbumIdsCache().put(artistId, Collections.unmodifiableList(allIds));
+			}
+
+			batches.put(END);
+		} catch (InterruptedException | InterruptedIOException ex) {
+			// Closed by the consumer
+		} catch (Throwable ex) {
+			// Any failure must reach the consumer, which would otherwise
+			// wait forever
+			try {
+				batches.put(ex);
+			} catch (InterruptedException ie) {
+				// Closed by the consumer
+			}
+		} finally {
+			// Abort the prefetched page if stopped early
+			if (nextPage != null) {
+				nextPage.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Fetches the albums of one page of IDs concurrently, and delivers them
+	 * in order as they arrive.
+	 */
+	private void emitAlbums(List<String> ids) throws IOException, InterruptedException {
+		List<Supplier<CompletableFuture<List<Album>>>> tasks = new ArrayList<>();
+		for (int i = 0; i < ids.size(); i += SpotifyAPI.MAX_ALBUMS_PER_REQUEST) {
+			List<String> sublist = ids.subList(i, Math.min(ids.size(), i + SpotifyAPI.MAX_ALBUMS_PER_REQUEST));
+			tasks.add(() -> api.getAlbumsDataAsync(sublist));
+		}
+
+		List<CompletableFuture<List<Album>>> results = BatchFetcher.fetch(tasks, api.getBatchParallelism());
+		try {
+			for (CompletableFuture<List<Album>> result : results) {
+				batches.put(Futures.await(result));
+			}
+		} finally {
+			results.forEach(r -> r.cancel(false));
+		}
+	}
+}
@@ -0,0 +1,231 @@
+package spotifyparser;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the albums of an artist, in discography order, as each batch is
+ * fetched. Unlike {@link DiscographyPager}, nothing is fetched ahead of the
+ * demand of the subscriber: album ID pages and album batches are only
+ * requested to cover the albums requested and not delivered yet, so a slow
+ * subscriber holds at most a few batches in memory. Cancelling the
+ * subscription aborts the requests in flight.
+ * <p>
+ * Each subscriber fetches the discography independently.
+ *
+ * @see SpotifyAPI#publishDiscography(java.lang.String)
+ */
+public class DiscographyPublisher implements Flow.Publisher<Album> {
+
+	private final SpotifyAPI api;
+	private final String artistId;
+
+	DiscographyPublisher(SpotifyAPI api, String artistId) {
+		this.api = api;
+		this.artistId = artistId;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super Album> subscriber) {
+		DiscographySubscription subscription = new DiscographySubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+		subscription.drain();
+	}
+
+	/**
+	 * Unwraps the failure of a request.
+	 */
+	static Throwable causeOf(Throwable ex) {
+		while ((ex instanceof CompletionException || ex instanceof UncheckedIOException) && ex.getCause() != null) {
+			ex = ex.getCause();
+		}
+		return ex;
+	}
+
+	private class DiscographySubscription implements Flow.Subscription {
+
+		private final Flow.Subscriber<? super Album> subscriber;
+		private final AtomicLong requested = new AtomicLong();
+		private final AtomicInteger wip = new AtomicInteger();
+		private volatile boolean cancelled;
+		private volatile Throwable invalidRequest;
+
+		// Only accessed while draining
+		private final ArrayDeque<String> pendingIds = new ArrayDeque<>();
+		private final ArrayDeque<CompletableFuture<List<Album>>> batches = new ArrayDeque<>();
+		private final ArrayDeque<Integer> batchSizes = new ArrayDeque<>();
+		private final List<String> allIds = new ArrayList<>();
+		private CompletableFuture<Page<String>> page;
+		private String nextPageURL;
+		private boolean idsComplete;
+		private Iterator<Album> current = Collections.emptyIterator();
+		private long undelivered;
+		private boolean done;
+
+		DiscographySubscription(Flow.Subscriber<? super Album> subscriber) {
+			this.subscriber = subscriber;
+
+			List<String> cachedIds = api.getAlbumIdsCache().get(artistId);
+			if (cachedIds != null) {
+				pendingIds.addAll(cachedIds);
+				idsComplete = true;
+			} else {
+				nextPageURL = api.getAlbumIdsURL(artistId);
+			}
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				invalidRequest = new IllegalArgumentException("Non-positive request: " + n);
+			} else {
+				// Saturates at Long.MAX_VALUE, meaning unbounded
+				requested.accumulateAndGet(n, (a, b) -> (a + b < 0) ? Long.MAX_VALUE : a + b);
+			}
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			drain();
+		}
+
+		/**
+		 * Delivers the albums fetched and starts the requests needed, on a
+		 * single thread at a time. Any thread calling this method while
+		 * another one is draining makes it loop once more instead.
+		 */
+		void drain() {
+			if (wip.getAndIncrement() != 0) {
+				return;
+			}
+
+			int missed = 1;
+			do {
+				drainOnce();
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		private void drainOnce() {
+			if (done) {
+				return;
+			} else if (cancelled) {
+				abort();
+				return;
+			} else if (invalidRequest != null) {
+				fail(invalidRequest);
+				return;
+			}
+
+			// Deliver what was requested, in order
+			while (requested.get() > 0 && !cancelled) {
+				if (!current.hasNext()) {
+					CompletableFuture<List<Album>> head = batches.peek();
+					if (head == null || !head.isDone()) {
+						break;
+					}
+
+					batches.poll();
+					try {
+						List<Album> albums = head.join();
+
+						// Unknown IDs are skipped
+						undelivered -= batchSizes.poll() - albums.size();
+						current = albums.iterator();
+					} catch (CompletionException | CancellationException ex) {
+						fail(causeOf(ex));
+						return;
+					}
+					continue;
+				}
+
+				Album album = current.next();
+				undelivered--;
+				if (requested.get() != Long.MAX_VALUE) {
+					requested.decrementAndGet();
+				}
+				subscriber.onNext(album);
+			}
+
+			if (cancelled) {
+				abort();
+				return;
+			}
+
+			// Follow the album ID pages
+			if (page != null && page.isDone()) {
+				try {
+					Page<String> result = page.join();
+					pendingIds.addAll(result.getItems());
+					allIds.addAll(result.getItems());
+					nextPageURL = result.getNext();
+				} catch (CompletionException | CancellationException ex) {
+					fail(causeOf(ex));
+					return;
+				}
+
+				page = null;
+				if (nextPageURL == null) {
+					idsComplete = true;
+					api.getAlbumIdsCache().put(artistId, Collections.unmodifiableList(new ArrayList<>(allIds)));
+				}
+			}
+
+			if (idsComplete && pendingIds.isEmpty() && batches.isEmpty() && !current.hasNext()) {
+				done = true;
+				subscriber.onComplete();
+				return;
+			}
+
+			// Only fetch the albums requested and not fetched yet
+			while (undelivered < requested.get() && batches.size() < api.getBatchParallelism()) {
+				if (pendingIds.size() >= SpotifyAPI.MAX_ALBUMS_PER_REQUEST || (idsComplete && !pendingIds.isEmpty())) {
+					List<String> batch = new ArrayList<>();
+					while (batch.size() < SpotifyAPI.MAX_ALBUMS_PER_REQUEST && !pendingIds.isEmpty()) {
+						batch.add(pendingIds.poll());
+					}
+
+					CompletableFuture<List<Album>> albums = api.getAlbumsDataAsync(batch);
+					batches.add(albums);
+					batchSizes.add(batch.size());
+					undelivered += batch.size();
+					albums.whenComplete((v, ex) -> drain());
+				} else if (!idsComplete && page == null) {
+					page = api.getAlbumIdPageAsync(nextPageURL);
+					page.whenComplete((v, ex) -> drain());
+					break;
+				} else {
+					break;
+				}
+			}
+		}
+
+		private void fail(Throwable ex) {
+			abort();
+			subscriber.onError(ex);
+		}
+
+		private void abort() {
+			done = true;
+			if (page != null) {
+				page.cancel(true);
+			}
+			batches.forEach(batch -> batch.cancel(true));
+			batches.clear();
+			batchSizes.clear();
+			pendingIds.clear();
+			current = Collections.emptyIterator();
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package spotifyparser;
+
+/**
+ * Interfaces of publishers and subscribers of items with backpressure: a
+ * subscriber receives no more items than it requested. They follow the
+ * contract of {@code java.util.concurrent.Flow} from Java 9, which is not
+ * available on Java 8, so that they can be replaced by it later.
+ */
+public final class Flow {
+
+	private Flow() {
+	}
+
+	/**
+	 * A producer of items, received by each subscriber as it requests them.
+	 *
+	 * @param <T> the type of items.
+	 */
+	@FunctionalInterface
+	public interface Publisher<T> {
+
+		/**
+		 * Adds a subscriber, which is first given its subscription through
+		 * {@link Subscriber#onSubscribe(Subscription)}.
+		 *
+		 * @param subscriber the subscriber.
+		 */
+		void subscribe(Subscriber<? super T> subscriber);
+	}
+
+	/**
+	 * A receiver of items. The methods of a subscriber are never called
+	 * concurrently, and no method is called after {@link #onError(Throwable)}
+	 * or {@link #onComplete()}.
+	 *
+	 * @param <T> the type of items.
+	 */
+	public interface Subscriber<T> {
+
+		void onSubscribe(Subscription subscription);
+
+		void onNext(T item);
+
+		void onError(Throwable throwable);
+
+		void onComplete();
+	}
+
+	/**
+	 * The link between a publisher and one of its subscribers.
+	 */
+	public interface Subscription {
+
+		/**
+		 * Requests more items. Requesting a non-positive number of items
+		 * fails the subscription with an {@link IllegalArgumentException}.
+		 *
+		 * @param n the number of items, added to those requested before.
+		 */
+		void request(long n);
+
+		/**
+		 * Stops receiving items. Work in progress for the subscriber is
+		 * aborted.
+		 */
+		void cancel();
+	}
+}
@@ -0,0 +1,85 @@
+package spotifyparser;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Helpers to use asynchronous results from blocking code.
+ */
+public final class Futures {
+
+	private Futures() {
+	}
+
+	/**
+	 * Waits for an asynchronous request, unwrapping its failure.
+	 *
+	 * @param <T> the type of result.
+	 * @param future the future to wait for.
+	 * @return the result of the future.
+	 * @throws IOException if the request failed with an I/O error, or if the
+	 * calling thread was interrupted.
+	 */
+	public static <T> T await(CompletableFuture<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a response");
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) cause).getCause();
+			} else if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Waits for an asynchronous request, and cancels it if the calling thread
+	 * is interrupted while waiting.
+	 *
+	 * @param <T> the type of result.
+	 * @param future the future to wait for.
+	 * @return the result of the future.
+	 * @throws IOException if the request failed with an I/O error, or if the
+	 * calling thread was interrupted.
+	 */
+	public static <T> T awaitOrCancel(CompletableFuture<T> future) throws IOException {
+		try {
+			return await(future);
+		} finally {
+			// No effect if already completed
+			future.cancel(true);
+		}
+	}
+
+	/**
+	 * Cancels a future when a future derived from it is cancelled, since
+	 * {@link CompletableFuture} only propagates completion downstream.
+	 *
+	 * @param <T> the type of result of the source.
+	 * @param <U> the type of result of the derived future.
+	 * @param source the future the other one is derived from.
+	 * @param derived the derived future.
+	 * @return the derived future.
+	 */
+	public static <T, U> CompletableFuture<U> propagateCancellation(CompletableFuture<T> source, CompletableFuture<U> derived) {
+		derived.whenComplete((v, ex) -> {
+			if (derived.isCancelled()) {
+				source.cancel(true);
+			}
+		});
+		return derived;
+	}
+}
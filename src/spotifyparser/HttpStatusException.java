@@ -0,0 +1,22 @@
+package spotifyparser;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the API answers a request with an error status.
+ */
+public class HttpStatusException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int statusCode;
+
+	public HttpStatusException(int statusCode, String message) {
+		super("HTTP " + statusCode + ": " + message);
+		this.statusCode = statusCode;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+}
@@ -0,0 +1,60 @@
+package spotifyparser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * The layer responsible for actually exchanging HTTP messages on behalf of
+ * {@link SpotifyAPI}. Implementations are expected to be thread-safe and to be
+ * shared between many API instances, so that connections can be reused.
+ */
+public interface HttpTransport {
+
+	/**
+	 * Sends a request and blocks until the response headers are available.
+	 * The body of the returned response must be closed by the caller.
+	 *
+	 * @param request the request to send.
+	 * @return the response.
+	 * @throws IOException if the request could not be sent.
+	 */
+	ApiResponse send(ApiRequest request) throws IOException;
+
+	/**
+	 * Returns the executor on which asynchronous requests are performed.
+	 *
+	 * @return the executor of this transport.
+	 */
+	Executor getExecutor();
+
+	/**
+	 * Sends a request without blocking the calling thread.
+	 *
+	 * @param request the request to send.
+	 * @return a future completed with the response, or exceptionally with an
+	 * {@link UncheckedIOException} if the request failed.
+	 */
+	default CompletableFuture<ApiResponse> sendAsync(ApiRequest request) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return send(request);
+			} catch (IOException ex) {
+				throw new CompletionException(new UncheckedIOException(ex));
+			}
+		}, getExecutor());
+	}
+
+	/**
+	 * Returns the transport shared by every {@link SpotifyAPI} created without
+	 * an explicit transport. It pools connections, avoids being rate limited
+	 * by the API, and caches responses on disk in the user's home directory.
+	 *
+	 * @return the default transport.
+	 */
+	static HttpTransport getDefault() {
+		return CachingTransport.SHARED;
+	}
+}
@@ -0,0 +1,116 @@
+package spotifyparser;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A column of Spotify IDs. IDs are 22 base62 characters, which are packed in
+ * 6 bits each, so that an ID takes 17 bytes instead of a whole string. Other
+ * values are kept as they are.
+ */
+final class IdColumn {
+
+	private static final int ID_LENGTH = 22;
+	private static final int PACKED_LENGTH = (ID_LENGTH * 6 + 7) / 8;
+
+	private byte[] packed = new byte[PACKED_LENGTH * 8];
+	private Map<Integer, String> irregular;
+	private int size;
+
+	/**
+	 * Appends an ID.
+	 *
+	 * @return the row of the ID.
+	 */
+	int add(String id) {
+		if ((size + 1) * PACKED_LENGTH > packed.length) {
+			packed = Arrays.copyOf(packed, Math.max(PACKED_LENGTH * 8, packed.length * 2));
+		}
+
+		if (!pack(id, packed, size * PACKED_LENGTH)) {
+			if (irregular == null) {
+				irregular = new HashMap<>();
+			}
+			irregular.put(size, id);
+		}
+
+		return size++;
+	}
+
+	String get(int row) {
+		if (irregular != null && irregular.containsKey(row)) {
+			return irregular.get(row);
+		}
+
+		return unpack(packed, row * PACKED_LENGTH);
+	}
+
+	void trimToSize() {
+		packed = Arrays.copyOf(packed, size * PACKED_LENGTH);
+	}
+
+	long getMemoryUsage() {
+		return 32 + packed.length + ((irregular != null) ? 64L * irregular.size() : 0);
+	}
+
+	private static boolean pack(String id, byte[] dest, int offset) {
+		if (id == null || id.length() != ID_LENGTH) {
+			return false;
+		}
+
+		int bit = 0;
+		for (int i = 0; i < ID_LENGTH; ++i) {
+			int digit = digitOf(id.charAt(i));
+			if (digit < 0) {
+				Arrays.fill(dest, offset, offset + PACKED_LENGTH, (byte) 0);
+				return false;
+			}
+
+			// Write the 6 bits of the digit, most significant first
+			for (int b = 5; b >= 0; --b, ++bit) {
+				if ((digit & (1 << b)) != 0) {
+					dest[offset + bit / 8] |= 0x80 >>> (bit % 8);
+				}
+			}
+		}
+
+		return true;
+	}
+
+	private static String unpack(byte[] src, int offset) {
+		char[] id = new char[ID_LENGTH];
+		int bit = 0;
+		for (int i = 0; i < ID_LENGTH; ++i) {
+			int digit = 0;
+			for (int b = 0; b < 6; ++b, ++bit) {
+				digit = (digit << 1) | ((src[offset + bit / 8] >>> (7 - bit % 8)) & 1);
+			}
+			id[i] = charOf(digit);
+		}
+
+		return new String(id);
+	}
+
+	private static int digitOf(char c) {
+		if (c >= '0' && c <= '9') {
+			return c - '0';
+		} else if (c >= 'A' && c <= 'Z') {
+			return c - 'A' + 10;
+		} else if (c >= 'a' && c <= 'z') {
+			return c - 'a' + 36;
+		}
+
+		return -1;
+	}
+
+	private static char charOf(int digit) {
+		if (digit < 10) {
+			return (char) ('0' + digit);
+		} else if (digit < 36) {
+			return (char) ('A' + digit - 10);
+		}
+
+		return (char) ('a' + digit - 36);
+	}
+}
@@ -0,0 +1,112 @@
+package spotifyparser;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of durations, recorded without locking. Durations
+ * are counted in logarithmic buckets, four per power of two, so percentiles
+ * are accurate within 25%.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKETS = 4;
+	private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Records a duration.
+	 *
+	 * @param nanos the duration, in nanoseconds.
+	 */
+	public void record(long nanos) {
+		nanos = Math.max(0, nanos);
+		buckets.incrementAndGet(bucketOf(nanos));
+		count.increment();
+		total.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Returns the mean of the recorded durations.
+	 *
+	 * @param unit the unit of the result.
+	 * @return the mean, or 0 if nothing was recorded.
+	 */
+	public double getMean(TimeUnit unit) {
+		long n = count.sum();
+		return (n == 0) ? 0 : (double) total.sum() / n / unit.toNanos(1);
+	}
+
+	/**
+	 * Returns the longest recorded duration.
+	 *
+	 * @param unit the unit of the result.
+	 * @return the maximum, or 0 if nothing was recorded.
+	 */
+	public double getMax(TimeUnit unit) {
+		return (double) max.get() / unit.toNanos(1);
+	}
+
+	/**
+	 * Returns the duration below which a given proportion of the recorded
+	 * durations are.
+	 *
+	 * @param percentile the proportion, between 0 and 100.
+	 * @param unit the unit of the result.
+	 * @return the upper bound of the bucket holding the percentile, or 0 if
+	 * nothing was recorded.
+	 */
+	public double getPercentile(double percentile, TimeUnit unit) {
+		long[] counts = new long[BUCKETS];
+		long n = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			counts[i] = buckets.get(i);
+			n += counts[i];
+		}
+
+		long rank = (long) Math.ceil(n * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			seen += counts[i];
+			if (seen > 0 && seen >= rank) {
+				// Never beyond the actual maximum
+				return (double) Math.min(upperBoundOf(i), max.get()) / unit.toNanos(1);
+			}
+		}
+
+		return 0;
+	}
+
+	private static int bucketOf(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return (int) nanos;
+		}
+
+		// Exponent, then the two bits following the leading one
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int mantissa = (int) (nanos >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+		return exponent * SUB_BUCKETS + mantissa;
+	}
+
+	private static long upperBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		int exponent = bucket / SUB_BUCKETS;
+		long mantissa = bucket % SUB_BUCKETS;
+		long lower = (SUB_BUCKETS + mantissa) << (exponent - 2);
+		return lower + (1L << (exponent - 2)) - 1;
+	}
+}
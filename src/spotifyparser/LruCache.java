@@ -0,0 +1,140 @@
+package spotifyparser;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * A thread-safe in-memory cache evicting its least recently used entries once
+ * it holds too many entries or too many bytes. Entries also expire after a
+ * fixed time to live.
+ *
+ * @param <K> the type of keys.
+ * @param <V> the type of values.
+ */
+public class LruCache<K, V> {
+
+	private final int maxEntries;
+	private final long maxBytes;
+	private final long ttlNanos;
+	private final ToLongFunction<V> weigher;
+
+	private final LinkedHashMap<K, Node<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+	private long totalBytes;
+	private long hits;
+	private long misses;
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param maxEntries the maximum number of entries.
+	 * @param maxBytes the maximum total weight of the entries.
+	 * @param ttl the time to live of an entry.
+	 * @param unit the unit of {@code ttl}.
+	 * @param weigher estimates the size of a value, in bytes.
+	 */
+	public LruCache(int maxEntries, long maxBytes, long ttl, TimeUnit unit, ToLongFunction<V> weigher) {
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+		this.ttlNanos = unit.toNanos(ttl);
+		this.weigher = weigher;
+	}
+
+	/**
+	 * Returns the value associated with a key, if present and not expired.
+	 *
+	 * @param key the key.
+	 * @return the value, or null.
+	 */
+	public synchronized V get(K key) {
+		Node<V> node = map.get(key);
+		if (node == null) {
+			misses++;
+			return null;
+		}
+
+		if (System.nanoTime() - node.created > ttlNanos) {
+			remove(key);
+			misses++;
+			return null;
+		}
+
+		hits++;
+		return node.value;
+	}
+
+	/**
+	 * Associates a value with a key, evicting other entries if needed.
+	 *
+	 * @param key the key.
+	 * @param value the value. Must not be null.
+	 */
+	public synchronized void put(K key, V value) {
+		Node<V> node = new Node<>(value, weigher.applyAsLong(value), System.nanoTime());
+		Node<V> previous = map.put(key, node);
+		totalBytes += node.weight - ((previous != null) ? previous.weight : 0);
+
+		Iterator<Map.Entry<K, Node<V>>> it = map.entrySet().iterator();
+		while ((map.size() > maxEntries || totalBytes > maxBytes) && it.hasNext()) {
+			Map.Entry<K, Node<V>> eldest = it.next();
+			it.remove();
+			totalBytes -= eldest.getValue().weight;
+		}
+	}
+
+	/**
+	 * Removes the entry associated with a key.
+	 *
+	 * @param key the key.
+	 */
+	public synchronized void remove(K key) {
+		Node<V> node = map.remove(key);
+		if (node != null) {
+			totalBytes -= node.weight;
+		}
+	}
+
+	/**
+	 * Removes every entry. The counters are kept.
+	 */
+	public synchronized void clear() {
+		map.clear();
+		totalBytes = 0;
+	}
+
+	public synchronized int size() {
+		return map.size();
+	}
+
+	/**
+	 * Returns the estimated total size of the entries.
+	 *
+	 * @return the size, in bytes.
+	 */
+	public synchronized long getWeight() {
+		return totalBytes;
+	}
+
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	private static class Node<V> {
+
+		private final V value;
+		private final long weight;
+		private final long created;
+
+		Node(V value, long weight, long created) {
+			this.value = value;
+			this.weight = weight;
+			this.created = created;
+		}
+	}
+}
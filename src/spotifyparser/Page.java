@@ -0,0 +1,32 @@
+package spotifyparser;
+
+import java.util.List;
+
+/**
+ * One page of a paginated API response.
+ *
+ * @param <T> the type of items.
+ */
+public class Page<T> {
+
+	private final List<T> items;
+	private final String next;
+
+	public Page(List<T> items, String next) {
+		this.items = items;
+		this.next = next;
+	}
+
+	public List<T> getItems() {
+		return items;
+	}
+
+	/**
+	 * Returns the full URL of the following page.
+	 *
+	 * @return the URL, or null if this is the last page.
+	 */
+	public String getNext() {
+		return next;
+	}
+}
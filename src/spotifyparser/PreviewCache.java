@@ -0,0 +1,252 @@
+package spotifyparser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Downloads track previews ahead of time into a bounded directory, so that
+ * they can be played from a local file. The least recently used previews are
+ * deleted once the directory exceeds its maximum size, and previews being
+ * downloaded are never requested twice. Previews pinned by a player are kept
+ * until released.
+ */
+public class PreviewCache {
+
+	private static final String EXTENSION = ".mp3";
+
+	private final HttpTransport transport;
+	private final Path directory;
+	private final long maxBytes;
+	private final ExecutorService executor;
+
+	// Guarded by this. File size of every preview, in access order
+	private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<String, CompletableFuture<Path>> pending = new HashMap<>();
+	private final Map<String, Integer> pins = new HashMap<>();
+	private long totalBytes;
+
+	/**
+	 * Creates a preview cache.
+	 *
+	 * @param transport the transport used to download the previews.
+	 * @param directory the directory in which previews are stored. Created if
+	 * it does not exist; existing previews are reused.
+	 * @param maxBytes the maximum total size of the stored previews.
+	 * @param threads the number of previews downloaded concurrently.
+	 * @throws IOException if the directory could not be created or listed.
+	 */
+	public PreviewCache(HttpTransport transport, Path directory, long maxBytes, int threads) throws IOException {
+		this.transport = transport;
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		this.executor = Executors.newFixedThreadPool(threads, new UrlConnectionTransport.DaemonThreadFactory("preview-fetch"));
+
+		Files.createDirectories(directory);
+		loadIndex();
+	}
+
+	/**
+	 * Creates a preview cache in the user's home directory.
+	 *
+	 * @return the cache, or null if the directory could not be used.
+	 */
+	public static PreviewCache createDefault() {
+		Path directory = Paths.get(System.getProperty("user.home"), ".spotifyparser", "previews");
+		try {
+			return new PreviewCache(UrlConnectionTransport.SHARED, directory, 128L * 1024 * 1024, 2);
+		} catch (IOException ex) {
+			// Previews are still streamed without the cache
+			System.err.println("Could not open preview cache " + directory.toAbsolutePath());
+			ex.printStackTrace(System.err);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the local copy of a preview, if it was already downloaded.
+	 *
+	 * @param url the URL of the preview.
+	 * @return the file, or null if not downloaded yet.
+	 */
+	public synchronized Path getCached(String url) {
+		String key = CachingTransport.keyOf(url);
+		return hit(key) ? pathOf(key) : null;
+	}
+
+	/**
+	 * Downloads a preview in the background, unless it is already stored or
+	 * being downloaded.
+	 *
+	 * @param url the URL of the preview.
+	 * @return a future completed with the local file, or exceptionally with an
+	 * {@link UncheckedIOException} if the download failed.
+	 */
+	public synchronized CompletableFuture<Path> fetch(String url) {
+		String key = CachingTransport.keyOf(url);
+		if (hit(key)) {
+			return CompletableFuture.completedFuture(pathOf(key));
+		}
+
+		CompletableFuture<Path> download = pending.get(key);
+		if (download == null) {
+			download = CompletableFuture.supplyAsync(() -> {
+				try {
+					return download(url, key);
+				} catch (IOException ex) {
+					throw new CompletionException(new UncheckedIOException(ex));
+				}
+			}, executor);
+			pending.put(key, download);
+
+			download.whenComplete((path, ex) -> {
+				synchronized (this) {
+					pending.remove(key);
+				}
+			});
+		}
+
+		return download;
+	}
+
+	/**
+	 * Keeps a preview from being evicted while it is played, since its file
+	 * could not be deleted, or would be deleted under the player. Every call
+	 * must be matched by a call to {@link #unpin(java.lang.String)}.
+	 *
+	 * @param url the URL of the preview, whether downloaded or not.
+	 */
+	public synchronized void pin(String url) {
+		pins.merge(CachingTransport.keyOf(url), 1, Integer::sum);
+	}
+
+	/**
+	 * Releases a preview pinned by {@link #pin(java.lang.String)}.
+	 *
+	 * @param url the URL of the preview.
+	 */
+	public synchronized void unpin(String url) {
+		pins.computeIfPresent(CachingTransport.keyOf(url), (key, count) -> (count > 1) ? count - 1 : null);
+		evict();
+	}
+
+	/**
+	 * Starts downloading the previews of some tracks.
+	 *
+	 * @param tracks the tracks, in order of priority. Tracks without any
+	 * preview are ignored.
+	 */
+	public void prefetch(List<TrackData> tracks) {
+		for (TrackData track : tracks) {
+			if (track.hasPreview()) {
+				fetch(track.getPreviewURL());
+			}
+		}
+	}
+
+	private Path download(String url, String key) throws IOException {
+		Path temp = Files.createTempFile(directory, key, ".tmp");
+		try (ApiResponse response = transport.send(ApiRequest.get(url))) {
+			if (response.getStatusCode() != 200) {
+				throw new HttpStatusException(response.getStatusCode(), "Could not download preview " + url);
+			}
+
+			long size = Files.copy(response.getBody(), temp, StandardCopyOption.REPLACE_EXISTING);
+			Files.move(temp, pathOf(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			synchronized (this) {
+				Long previous = index.put(key, size);
+				totalBytes += size - ((previous != null) ? previous : 0);
+				evict();
+			}
+			return pathOf(key);
+		} finally {
+			CachingTransport.deleteQuietly(temp);
+		}
+	}
+
+	private void loadIndex() throws IOException {
+		List<Path> previews = new ArrayList<>();
+		try (Stream<Path> files = Files.list(directory)) {
+			files.forEach(file -> {
+				String name = file.getFileName().toString();
+				if (name.endsWith(EXTENSION)) {
+					previews.add(file);
+				} else if (name.endsWith(".tmp")) {
+					// Left over by an interrupted download
+					CachingTransport.deleteQuietly(file);
+				}
+			});
+		}
+
+		// Least recently used first
+		Map<Path, FileTime> times = new HashMap<>();
+		for (Path preview : previews) {
+			times.put(preview, Files.getLastModifiedTime(preview));
+		}
+		Collections.sort(previews, Comparator.comparing(times::get));
+
+		synchronized (this) {
+			for (Path preview : previews) {
+				String name = preview.getFileName().toString();
+				long size = Files.size(preview);
+				index.put(name.substring(0, name.length() - EXTENSION.length()), size);
+				totalBytes += size;
+			}
+
+			evict();
+		}
+	}
+
+	/**
+	 * Looks a preview up, marking it as the most recently used. The time of
+	 * its file is updated as well, as the order is restored from it.
+	 */
+	private synchronized boolean hit(String key) {
+		if (index.get(key) == null) {
+			return false;
+		}
+
+		try {
+			Files.setLastModifiedTime(pathOf(key), FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException ex) {
+			// Only the order after a restart is affected
+		}
+		return true;
+	}
+
+	private synchronized void evict() {
+		Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+		while (totalBytes > maxBytes && it.hasNext()) {
+			Map.Entry<String, Long> eldest = it.next();
+			if (pins.containsKey(eldest.getKey())) {
+				continue;
+			}
+			it.remove();
+			totalBytes -= eldest.getValue();
+
+			CachingTransport.deleteQuietly(pathOf(eldest.getKey()));
+		}
+	}
+
+	private Path pathOf(String key) {
+		return directory.resolve(key + EXTENSION);
+	}
+}
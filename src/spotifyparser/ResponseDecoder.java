@@ -0,0 +1,23 @@
+package spotifyparser;
+
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+
+/**
+ * Decodes a JSON response directly from its stream, without building an
+ * intermediate tree or string.
+ *
+ * @param <T> the type of the decoded result.
+ */
+@FunctionalInterface
+public interface ResponseDecoder<T> {
+
+	/**
+	 * Decodes the whole JSON document.
+	 *
+	 * @param reader the reader positioned at the start of the document.
+	 * @return the decoded result.
+	 * @throws IOException if the stream could not be read or is malformed.
+	 */
+	T decode(JsonReader reader) throws IOException;
+}
@@ -0,0 +1,299 @@
+package spotifyparser;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory index over the names of the artists, albums and tracks seen so
+ * far, answering exact lookups, autocompletion and approximate searches
+ * without any request. Names are compared regardless of case, accents and
+ * punctuation.
+ * <p>
+ * Completion matches the beginning of any word of a name, using a sorted map
+ * of every word suffix of the names. Approximate searches rank names by the
+ * proportion of character trigrams they share with the query, so that typos
+ * are tolerated. The index stops growing once it holds a maximum number of
+ * entries. It may be used by any number of threads.
+ */
+public class SearchIndex {
+
+	private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+	private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	/**
+	 * Minimum similarity of an approximate match, between 0 and 1.
+	 */
+	private static final double MIN_SIMILARITY = 0.4;
+
+	/**
+	 * Maximum number of candidates ranked by a completion.
+	 */
+	private static final int MAX_COMPLETION_CANDIDATES = 256;
+
+	public enum Kind {
+		ARTIST, ALBUM, TRACK
+	}
+
+	private final int maxEntries;
+	private final AtomicInteger size = new AtomicInteger();
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private final Map<String, String> artistIds = new ConcurrentHashMap<>();
+	private final ConcurrentSkipListMap<String, Set<Entry>> words = new ConcurrentSkipListMap<>();
+	private final Map<String, Set<Entry>> trigrams = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates an empty index.
+	 *
+	 * @param maxEntries the maximum number of names indexed.
+	 */
+	public SearchIndex(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * Indexes an artist.
+	 *
+	 * @param artist the artist.
+	 */
+	public void addArtist(Artist artist) {
+		if (artist.getName() != null && add(new Entry(Kind.ARTIST, artist.getName(), artist.getId(), null))) {
+			artistIds.putIfAbsent(normalize(artist.getName()), artist.getId());
+		}
+	}
+
+	/**
+	 * Indexes an album and its tracks.
+	 *
+	 * @param album the album.
+	 */
+	public void addAlbum(Album album) {
+		if (album.getAlbumName() != null) {
+			add(new Entry(Kind.ALBUM, album.getAlbumName(), album.getId(), album.getId()));
+		}
+
+		for (TrackData track : album.getTracks()) {
+			if (track.getName() != null && track.getId() != null) {
+				add(new Entry(Kind.TRACK, track.getName(), track.getId(), album.getId()));
+			}
+		}
+	}
+
+	/**
+	 * Finds the ID of an indexed artist with exactly the given name.
+	 *
+	 * @param name the name, compared regardless of case, accents and
+	 * punctuation.
+	 * @return the artist ID, or null if no such artist was indexed.
+	 */
+	public String findArtistId(String name) {
+		String key = normalize(name);
+		return key.isEmpty() ? null : artistIds.get(key);
+	}
+
+	/**
+	 * Completes the beginning of a name. Names starting with the given text
+	 * come first, then names with a word starting with it, shortest first.
+	 *
+	 * @param prefix the beginning of the name, or of any of its words.
+	 * @param kind the kind of names returned, or null for any.
+	 * @param limit the maximum number of results.
+	 * @return the matching entries, best first.
+	 */
+	public List<Entry> complete(String prefix, Kind kind, int limit) {
+		String key = normalize(prefix);
+		if (key.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		// Every key starting with the prefix sorts between these bounds
+		Set<Entry> candidates = new LinkedHashSet<>();
+		for (Set<Entry> matches : words.subMap(key, true, key + Character.MAX_VALUE, true).values()) {
+			for (Entry entry : matches) {
+				if (kind == null || entry.kind == kind) {
+					candidates.add(entry);
+				}
+			}
+			if (candidates.size() >= MAX_COMPLETION_CANDIDATES) {
+				break;
+			}
+		}
+
+		List<Entry> results = new ArrayList<>(candidates);
+		results.sort(Comparator.<Entry>comparingInt(entry -> entry.key.startsWith(key) ? 0 : 1)
+				.thenComparingInt(entry -> entry.key.length())
+				.thenComparing(entry -> entry.key));
+		return results.subList(0, Math.min(limit, results.size()));
+	}
+
+	/**
+	 * Searches names approximately, tolerating typos and missing words.
+	 *
+	 * @param query the searched name.
+	 * @param kind the kind of names returned, or null for any.
+	 * @param limit the maximum number of results.
+	 * @return the matching entries, most similar first.
+	 */
+	public List<Entry> search(String query, Kind kind, int limit) {
+		String key = normalize(query);
+		if (key.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		// Count the trigrams shared by each name with the query
+		Set<String> queryTrigrams = trigramsOf(key);
+		Map<Entry, Integer> shared = new HashMap<>();
+		for (String trigram : queryTrigrams) {
+			Set<Entry> matches = trigrams.get(trigram);
+			if (matches == null) {
+				continue;
+			}
+
+			for (Entry entry : matches) {
+				if (kind == null || entry.kind == kind) {
+					shared.merge(entry, 1, Integer::sum);
+				}
+			}
+		}
+
+		// Dice coefficient of the two sets of trigrams
+		Map<Entry, Double> similarities = new HashMap<>();
+		shared.forEach((entry, count) -> {
+			double similarity = 2.0 * count / (queryTrigrams.size() + entry.trigramCount);
+			if (similarity >= MIN_SIMILARITY) {
+				similarities.put(entry, similarity);
+			}
+		});
+
+		List<Entry> results = new ArrayList<>(similarities.keySet());
+		results.sort(Comparator.<Entry>comparingDouble(similarities::get).reversed()
+				.thenComparing(entry -> entry.key));
+		return results.subList(0, Math.min(limit, results.size()));
+	}
+
+	/**
+	 * Returns the number of names indexed.
+	 *
+	 * @return the number of entries.
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	private boolean add(Entry entry) {
+		if (entry.key.isEmpty()) {
+			return false;
+		}
+
+		String identity = entry.kind + ":" + entry.id + ":" + entry.key;
+		if (entries.containsKey(identity)) {
+			return true;
+		} else if (size.incrementAndGet() > maxEntries) {
+			size.decrementAndGet();
+			return false;
+		} else if (entries.putIfAbsent(identity, entry) != null) {
+			// Added concurrently
+			size.decrementAndGet();
+			return true;
+		}
+
+		// Each word starts a suffix, so that any word can be completed
+		for (int i = 0; i < entry.key.length(); ++i) {
+			if (i == 0 || entry.key.charAt(i - 1) == ' ') {
+				words.computeIfAbsent(entry.key.substring(i), k -> ConcurrentHashMap.newKeySet()).add(entry);
+			}
+		}
+
+		for (String trigram : trigramsOf(entry.key)) {
+			trigrams.computeIfAbsent(trigram, k -> ConcurrentHashMap.newKeySet()).add(entry);
+		}
+		return true;
+	}
+
+	/**
+	 * Normalizes a name for comparison: lower case, without accents, and with
+	 * words separated by single spaces.
+	 *
+	 * @param name the name.
+	 * @return the normalized name, empty if it has no letter nor digit.
+	 */
+	static String normalize(String name) {
+		String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+		String words = SEPARATORS.matcher(MARKS.matcher(decomposed).replaceAll("")).replaceAll(" ");
+		return words.trim().toLowerCase(Locale.ROOT);
+	}
+
+	private static Set<String> trigramsOf(String key) {
+		// Padded, so that the beginning and end of words weigh more
+		String padded = "  " + key + " ";
+		Set<String> result = new LinkedHashSet<>();
+		for (int i = 0; i + 3 <= padded.length(); ++i) {
+			result.add(padded.substring(i, i + 3));
+		}
+		return result;
+	}
+
+	/**
+	 * An indexed name.
+	 */
+	public static class Entry {
+
+		private final Kind kind;
+		private final String name;
+		private final String id;
+		private final String albumId;
+		private final String key;
+		private final int trigramCount;
+
+		Entry(Kind kind, String name, String id, String albumId) {
+			this.kind = kind;
+			this.name = name;
+			this.id = id;
+			this.albumId = albumId;
+			this.key = normalize(name);
+			this.trigramCount = trigramsOf(key).size();
+		}
+
+		public Kind getKind() {
+			return kind;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns the ID of the artist, album or track.
+		 *
+		 * @return the ID.
+		 */
+		public String getId() {
+			return id;
+		}
+
+		/**
+		 * Returns the ID of the album of a track, or of an album itself.
+		 *
+		 * @return the album ID, or null for an artist.
+		 */
+		public String getAlbumId() {
+			return albumId;
+		}
+
+		@Override
+		public String toString() {
+			return kind + " " + name + " (" + id + ")";
+		}
+	}
+}
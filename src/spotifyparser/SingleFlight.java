@@ -0,0 +1,199 @@
+package spotifyparser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical requests, so that they share a single
+ * request and its result. A request started for a key is joined by every
+ * caller asking for the same key until it completes; the key is forgotten
+ * afterwards, so later callers start a new request.
+ * <p>
+ * Each caller receives its own future. Cancelling it only cancels the shared
+ * request once every caller waiting for it has cancelled.
+ *
+ * @param <K> the type of key identifying a request.
+ * @param <V> the type of result of a request.
+ */
+public class SingleFlight<K, V> {
+
+	// Guarded by this
+	private final Map<K, Flight<V>> flights = new HashMap<>();
+
+	private final LongAdder started = new LongAdder();
+	private final LongAdder joined = new LongAdder();
+
+	/**
+	 * Starts a request, or joins the request in flight for the same key.
+	 *
+	 * @param key the key identifying the request.
+	 * @param request starts the request, if none is in flight for the key.
+	 * @return a future completed with the result of the shared request.
+	 */
+	public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> request) {
+		return executeAll(Collections.singletonList(key), keys -> {
+			Map<K, CompletableFuture<V>> sources = new HashMap<>();
+			sources.put(key, request.get());
+			return sources;
+		}).get(key);
+	}
+
+	/**
+	 * Starts the requests of several keys at once, joining those already in
+	 * flight. The keys not in flight are passed together to a single call, so
+	 * that they can be grouped in as few requests as possible.
+	 *
+	 * @param keys the keys identifying the requests.
+	 * @param request starts the requests of the given keys, returning one
+	 * future per key. Keys missing from the returned map complete with
+	 * {@code null}.
+	 * @return one future per distinct key, in the order supplied.
+	 */
+	public Map<K, CompletableFuture<V>> executeAll(Collection<K> keys, Function<List<K>, Map<K, CompletableFuture<V>>> request) {
+		Map<K, Flight<V>> joinedFlights = new LinkedHashMap<>();
+		Map<K, Flight<V>> startedFlights = new HashMap<>();
+		synchronized (this) {
+			for (K key : keys) {
+				if (joinedFlights.containsKey(key)) {
+					continue;
+				}
+
+				Flight<V> flight = flights.get(key);
+				if (flight == null) {
+					flight = new Flight<>();
+					flights.put(key, flight);
+					startedFlights.put(key, flight);
+				} else {
+					joined.increment();
+				}
+				flight.waiters++;
+				joinedFlights.put(key, flight);
+			}
+		}
+
+		// Start the new requests outside of the lock
+		if (!startedFlights.isEmpty()) {
+			started.add(startedFlights.size());
+
+			Map<K, CompletableFuture<V>> sources;
+			try {
+				sources = request.apply(new ArrayList<>(startedFlights.keySet()));
+			} catch (RuntimeException ex) {
+				sources = new HashMap<>();
+				for (K key : startedFlights.keySet()) {
+					CompletableFuture<V> failed = new CompletableFuture<>();
+					failed.completeExceptionally(ex);
+					sources.put(key, failed);
+				}
+			}
+
+			for (Map.Entry<K, Flight<V>> entry : startedFlights.entrySet()) {
+				CompletableFuture<V> source = sources.get(entry.getKey());
+				start(entry.getKey(), entry.getValue(), (source != null) ? source : CompletableFuture.completedFuture(null));
+			}
+		}
+
+		Map<K, CompletableFuture<V>> results = new LinkedHashMap<>();
+		joinedFlights.forEach((key, flight) -> results.put(key, join(key, flight)));
+		return results;
+	}
+
+	/**
+	 * Returns the number of requests started.
+	 *
+	 * @return the number of requests started since creation.
+	 */
+	public long getStartedCount() {
+		return started.sum();
+	}
+
+	/**
+	 * Returns the number of calls which joined a request in flight instead of
+	 * starting their own.
+	 *
+	 * @return the number of coalesced calls since creation.
+	 */
+	public long getJoinedCount() {
+		return joined.sum();
+	}
+
+	private void start(K key, Flight<V> flight, CompletableFuture<V> source) {
+		boolean abandoned;
+		synchronized (this) {
+			flight.source = source;
+			abandoned = (flight.waiters == 0);
+		}
+
+		if (abandoned) {
+			source.cancel(true);
+		}
+
+		source.whenComplete((value, ex) -> {
+			synchronized (this) {
+				flights.remove(key, flight);
+			}
+
+			if (ex != null) {
+				flight.result.completeExceptionally(ex);
+			} else {
+				flight.result.complete(value);
+			}
+		});
+	}
+
+	private CompletableFuture<V> join(K key, Flight<V> flight) {
+		CompletableFuture<V> result = new CompletableFuture<>();
+		flight.result.whenComplete((value, ex) -> {
+			if (ex != null) {
+				result.completeExceptionally(ex);
+			} else {
+				result.complete(value);
+			}
+		});
+
+		result.whenComplete((value, ex) -> {
+			if (result.isCancelled()) {
+				release(key, flight);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Releases a caller which cancelled its future, and cancels the shared
+	 * request if nobody waits for it anymore.
+	 */
+	private void release(K key, Flight<V> flight) {
+		CompletableFuture<V> source;
+		synchronized (this) {
+			if (--flight.waiters > 0 || flight.result.isDone()) {
+				return;
+			}
+
+			// Later callers must not join a cancelled request
+			flights.remove(key, flight);
+			source = flight.source;
+		}
+
+		// Not started yet: cancelled once started
+		if (source != null) {
+			source.cancel(true);
+		}
+	}
+
+	private static class Flight<V> {
+
+		final CompletableFuture<V> result = new CompletableFuture<>();
+		CompletableFuture<V> source;
+		int waiters;
+	}
+}
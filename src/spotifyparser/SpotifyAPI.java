@@ -1,80 +1,178 @@
 package spotifyparser;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import com.google.gson.JsonSyntaxException;
-import java.io.BufferedReader;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
-import javafx.scene.image.Image;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A client of the Spotify Web API. A single instance may be shared by any
+ * number of threads.
+ */
 public class SpotifyAPI {
 
 	//<editor-fold defaultstate="collapsed" desc="Login Credentials">
-	private static final String SPOTIFY_CLIENT_ID;
-	private static final String SPOTIFY_CLIENT_SECRET;
+	/**
+	 * Read on first authentication rather than when the class is loaded, so
+	 * that creating a client never touches the disk.
+	 */
+	private static class Credentials {
+
+		static final String SPOTIFY_CLIENT_ID;
+		static final String SPOTIFY_CLIENT_SECRET;
+
+		static {
+			InputStream keys = SpotifyAPI.class.getClassLoader().getResourceAsStream("spotify_key");
+			if (keys != null) {
+				Scanner sc = new Scanner(keys);
+				SPOTIFY_CLIENT_ID = sc.nextLine();
+				SPOTIFY_CLIENT_SECRET = sc.nextLine();
+				sc.close();
+			} else {
+				// Only usable with a local stand-in of the API
+				SPOTIFY_CLIENT_ID = "";
+				SPOTIFY_CLIENT_SECRET = "";
+			}
+		}
+	}
 	//</editor-fold>
 
-	static {
-		Scanner sc = new Scanner(SpotifyAPI.class.getClassLoader().getResourceAsStream("spotify_key"));
-		SPOTIFY_CLIENT_ID = sc.nextLine();
-		SPOTIFY_CLIENT_SECRET = sc.nextLine();
-		sc.close();
+	/**
+	 * Base URL of the Web API, which may be overridden by the
+	 * {@code spotifyparser.api.url} system property.
+	 */
+	public static final String DEFAULT_API_URL = System.getProperty("spotifyparser.api.url", "https://api.spotify.com");
+
+	/**
+	 * Base URL of the accounts service, which may be overridden by the
+	 * {@code spotifyparser.accounts.url} system property.
+	 */
+	public static final String DEFAULT_ACCOUNTS_URL = System.getProperty("spotifyparser.accounts.url", "https://accounts.spotify.com");
+
+	/**
+	 * Maximum number of IDs accepted by the several albums endpoint.
+	 */
+	static final int MAX_ALBUMS_PER_REQUEST = 20;
+
+	/**
+	 * Maximum number of tracks returned by the album tracks endpoint.
+	 */
+	static final int MAX_TRACKS_PER_REQUEST = 50;
+
+	private final HttpTransport transport;
+	private final String apiURL;
+	private final String accountsURL;
+	private final TokenManager tokens;
+	private final ApiMetrics metrics = new ApiMetrics(this);
+	private volatile int batchParallelism = 4;
+	private volatile ForkJoinPool parsePool;
+	private volatile boolean loadCovers = true;
+	private final CoverLoader coverLoader;
+	private final ExecutorService pagerExecutor = Executors.newCachedThreadPool(new UrlConnectionTransport.DaemonThreadFactory("spotify-pager"));
+
+	// Recently resolved data, to avoid any request when coming back to an artist
+	private final LruCache<String, String> artistIdCache = new LruCache<>(1000, Long.MAX_VALUE, 30, TimeUnit.MINUTES, id -> 0);
+	private final LruCache<String, List<String>> albumIdsCache = new LruCache<>(500, Long.MAX_VALUE, 30, TimeUnit.MINUTES, ids -> 0);
+	private final SearchIndex searchIndex = new SearchIndex(200_000);
+	private final LruCache<String, Album> albumCache = new LruCache<>(2000, 256L * 1024 * 1024, 30, TimeUnit.MINUTES, this::estimateSize);
+
+	// Requests in flight, shared by concurrent identical calls
+	private final SingleFlight<String, String> artistIdFlights = new SingleFlight<>();
+	private final SingleFlight<String, List<String>> albumIdsFlights = new SingleFlight<>();
+	private final SingleFlight<String, Album> albumFlights = new SingleFlight<>();
+
+	/**
+	 * Creates an API client using the shared default transport.
+	 */
+	public SpotifyAPI() {
+		this(HttpTransport.getDefault());
+	}
+
+	/**
+	 * Creates an API client using the given transport.
+	 *
+	 * @param transport the transport used to send every API request. Covers
+	 * are downloaded directly instead.
+	 */
+	public SpotifyAPI(HttpTransport transport) {
+		this(transport, DEFAULT_API_URL, DEFAULT_ACCOUNTS_URL);
 	}
 
-	private String accessToken;
+	/**
+	 * Creates an API client sending its requests to other servers, such as the
+	 * stub server of the tests.
+	 *
+	 * @param transport the transport used to send every API request. Covers
+	 * are downloaded directly instead.
+	 * @param apiURL the base URL of the Web API, without trailing slash.
+	 * @param accountsURL the base URL of the accounts service, without
+	 * trailing slash.
+	 */
+	public SpotifyAPI(HttpTransport transport, String apiURL, String accountsURL) {
+		this.transport = transport;
+		this.apiURL = apiURL;
+		this.accountsURL = accountsURL;
+		this.tokens = new TokenManager(this::requestToken);
+
+		// Covers are served by the CDN, so they neither use up the rate limit
+		// of the API nor feed its concurrency limit
+		this.coverLoader = new CoverLoader(UrlConnectionTransport.SHARED, metrics, 4, 256);
+	}
 
 	/**
-	 * Initializes an access token from the Spotify API. This method must be
-	 * called before any use of the API.
+	 * Initializes an access token from the Spotify API. Calling this method is
+	 * optional, since a token is otherwise obtained on the first request, but
+	 * it allows authentication failures to be detected early. The token is
+	 * then renewed automatically before it expires.
 	 *
 	 * @throws java.io.IOException if obtaining the token was not successful.
 	 */
 	public void authenticate() throws IOException {
-		try {
-			// Open the connection
-			URL requestURL = new URL("https://accounts.spotify.com/api/token");
-			HttpURLConnection connection = (HttpURLConnection) requestURL.openConnection();
-
-			// Prepare parameters & data
-			String postParameters = "grant_type=client_credentials";
-			String keys = SPOTIFY_CLIENT_ID + ":" + SPOTIFY_CLIENT_SECRET;
-			String authData = "Basic " + new String(Base64.getEncoder().encode(keys.getBytes()));
-			connection.setRequestProperty("Authorization", authData);
-			connection.setRequestMethod("POST");
-			connection.setDoOutput(true);
-
-			// Send parameters & data
-			try (OutputStream os = connection.getOutputStream()) {
-				os.write(postParameters.getBytes());
-			}
+		tokens.getToken();
+	}
 
-			// Read response
-			StringBuilder output = new StringBuilder();
-			try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-				String line;
-				while ((line = in.readLine()) != null) {
-					output.append(line).append('\n');
-				}
+	private AccessToken requestToken() throws IOException {
+		// Prepare parameters & data
+		String postParameters = "grant_type=client_credentials";
+		String keys = Credentials.SPOTIFY_CLIENT_ID + ":" + Credentials.SPOTIFY_CLIENT_SECRET;
+		String authData = "Basic " + Base64.getEncoder().encodeToString(keys.getBytes(StandardCharsets.UTF_8));
+		ApiRequest request = ApiRequest.post(accountsURL + "/api/token", postParameters.getBytes(StandardCharsets.UTF_8))
+				.setHeader("Authorization", authData)
+				.setHeader("Content-Type", "application/x-www-form-urlencoded");
+
+		// Send request and extract result
+		AccessToken token;
+		try (ApiResponse response = transport.send(request)) {
+			if (response.getStatusCode() != 200) {
+				throw new HttpStatusException(response.getStatusCode(), "Authentication failed: " + readBody(response).trim());
 			}
 
-			// Parse JSON and extract result
-			JsonObject rootObject = new JsonParser().parse(output.toString()).getAsJsonObject();
-			this.accessToken = rootObject.get("access_token").getAsString();
-		} catch (JsonSyntaxException ex) {
-			throw new AssertionError(ex);
+			token = decode(response, SpotifyJson::readAccessToken);
 		}
 
+		if (token == null) {
+			throw new IOException("No access token returned");
+		}
+		return token;
 	}
 
 	/**
@@ -89,10 +187,126 @@ public class SpotifyAPI {
 	 * @throws IOException if an IO error was encountered.
 	 */
 	public String sendRequest(String url, String params) throws IOException {
-		if (accessToken == null) {
-			throw new IOException("Not authenticated.");
+		return Futures.awaitOrCancel(sendRequestAsync(url, params));
+	}
+
+	/**
+	 * Sends a GET request and decodes the returned JSON data directly from the
+	 * response stream, without holding the whole response in memory.
+	 *
+	 * @param <T> the type of the decoded result.
+	 * @param url the URL to send the request to.
+	 * @param params the parameters to attach. Should not include the preceding
+	 * question mark character.
+	 * @param decoder the decoder of the response.
+	 * @return the decoded result.
+	 * @throws IOException if an IO error was encountered.
+	 */
+	public <T> T sendRequest(String url, String params, ResponseDecoder<T> decoder) throws IOException {
+		return Futures.awaitOrCancel(sendRequestAsync(url, params, decoder));
+	}
+
+	/**
+	 * Sends a GET request without blocking the calling thread. This is the
+	 * asynchronous equivalent of {@link #sendRequest(String, String)}.
+	 *
+	 * @param url the URL to send the request to.
+	 * @param params the parameters to attach. Should not include the preceding
+	 * question mark character.
+	 * @return a future completed with the returned JSON data, or exceptionally
+	 * with an {@link UncheckedIOException} if an IO error was encountered.
+	 * Cancelling the future aborts the request.
+	 */
+	public CompletableFuture<String> sendRequestAsync(String url, String params) {
+		return executeAsync(buildURL(url, params), SpotifyAPI::readBody);
+	}
+
+	/**
+	 * Sends a GET request without blocking the calling thread, and decodes the
+	 * returned JSON data directly from the response stream. This is the
+	 * asynchronous equivalent of
+	 * {@link #sendRequest(String, String, ResponseDecoder)}.
+	 *
+	 * @param <T> the type of the decoded result.
+	 * @param url the URL to send the request to.
+	 * @param params the parameters to attach. Should not include the preceding
+	 * question mark character.
+	 * @param decoder the decoder of the response.
+	 * @return a future completed with the decoded result, or exceptionally
+	 * with an {@link UncheckedIOException} if an IO error was encountered.
+	 * Cancelling the future aborts the request.
+	 */
+	public <T> CompletableFuture<T> sendRequestAsync(String url, String params, ResponseDecoder<T> decoder) {
+		return executeAsync(buildURL(url, params), r -> decode(r, decoder));
+	}
+
+	private <T> T execute(String fullURL, BodyHandler<T> handler, Cancellation cancellation) throws IOException {
+		Object event = metrics.beginRequest();
+		long start = System.nanoTime();
+		ApiResponse response;
+		try {
+			String token = tokens.getToken();
+			response = transport.send(ApiRequest.get(fullURL)
+					.setHeader("Authorization", "Bearer " + token)
+					.setCancellation(cancellation));
+
+			if (response.getStatusCode() == 401) {
+				response.close();
+
+				// The token expired or was revoked early: renew it and try again
+				token = tokens.getTokenAfterRejection(token);
+				response = transport.send(ApiRequest.get(fullURL)
+						.setHeader("Authorization", "Bearer " + token)
+						.setCancellation(cancellation));
+			}
+		} catch (IOException ex) {
+			metrics.recordRequest(event, fullURL, System.nanoTime() - start, -1);
+			throw ex;
 		}
 
+		int code = response.getStatusCode();
+		long latency = System.nanoTime() - start;
+		metrics.recordRequest(event, fullURL, latency, code);
+
+		try (ApiResponse r = response) {
+			// Never hand error bodies to the decoders
+			if (code < 200 || code >= 300) {
+				throw new HttpStatusException(code, fullURL + " " + readBody(r).trim());
+			}
+
+			// Measure the body apart from the server latency
+			ApiMetrics.CountingInputStream body = new ApiMetrics.CountingInputStream(r.getBody());
+			long bodyStart = System.nanoTime();
+			T result = handler.handle(new ApiResponse(code, r.getHeaders(), body));
+			metrics.recordBody(event, fullURL, code, latency, System.nanoTime() - bodyStart, body.getCount());
+			return result;
+		}
+	}
+
+	private <T> CompletableFuture<T> executeAsync(String fullURL, BodyHandler<T> handler) {
+		Cancellation cancellation = new Cancellation();
+
+		// The body is handled on the transport thread as well
+		long submitted = System.nanoTime();
+		CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> {
+			metrics.recordExecutorWait(System.nanoTime() - submitted);
+			try {
+				return execute(fullURL, handler, cancellation);
+			} catch (IOException ex) {
+				throw new CompletionException(new UncheckedIOException(ex));
+			}
+		}, transport.getExecutor());
+
+		// Abort the connection when the result is not needed anymore
+		future.whenComplete((v, ex) -> {
+			if (future.isCancelled()) {
+				cancellation.cancel();
+			}
+		});
+		return future;
+	}
+
+	private static String buildURL(String url, String params) {
 		params = params.replace(' ', '+');
 
 		String fullURL = url;
@@ -100,26 +314,40 @@ public class SpotifyAPI {
 			fullURL += "?" + params;
 		}
 
-		// Open connection
-		URL requestURL = new URL(fullURL);
-		HttpURLConnection connection = (HttpURLConnection) requestURL.openConnection();
+		return fullURL;
+	}
 
-		// Prepare parameters & data
-		String bearerAuth = "Bearer " + accessToken;
-		connection.setRequestProperty("Authorization", bearerAuth);
-		connection.setRequestMethod("GET");
-
-		// Get response
-		StringBuilder output = new StringBuilder();
-		InputStream stream = (connection.getResponseCode() != 200) ? connection.getErrorStream() : connection.getInputStream();
-		try (BufferedReader in = new BufferedReader(new InputStreamReader(stream))) {
-			String line;
-			while ((line = in.readLine()) != null) {
-				output.append(line).append('\n');
-			}
+	private static String readBody(ApiResponse response) throws IOException {
+		// Read the whole body at once into a reused buffer, sized from
+		// its length when known
+		BufferPool.Content content;
+		try (InputStream in = response.getBody()) {
+			content = BufferPool.SHARED.readFully(in, contentLengthOf(response));
 		}
 
-		return output.toString();
+		try {
+			return new String(content.buffer, 0, content.length, StandardCharsets.UTF_8);
+		} finally {
+			BufferPool.SHARED.release(content.buffer);
+		}
+	}
+
+	private static long contentLengthOf(ApiResponse response) {
+		String length = response.getHeader("Content-Length");
+		try {
+			return (length != null) ? Long.parseLong(length.trim()) : -1;
+		} catch (NumberFormatException ex) {
+			return -1;
+		}
+	}
+
+	private static <T> T decode(ApiResponse response, ResponseDecoder<T> decoder) throws IOException {
+		try (JsonReader reader = new JsonReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8))) {
+			reader.setLenient(true);
+			return decoder.decode(reader);
+		} catch (IllegalStateException | NumberFormatException | MalformedJsonException ex) {
+			throw new AssertionError(ex);
+		}
 	}
 
 	/**
@@ -132,48 +360,117 @@ public class SpotifyAPI {
 	 * @throws IOException if an I/O error occurred.
 	 */
 	public String getArtistId(String artistNameQuery) throws IOException {
-		try {
-			// Prepare and send query
-			String endpoint = "https://api.spotify.com/v1/search";
-			String params = "market=CA&type=artist&limit=1&q=" + artistNameQuery;
-			String jsonOutput = sendRequest(endpoint, params);
-
-			// Parse result
-			JsonObject obj = new JsonParser().parse(jsonOutput).getAsJsonObject();
-			JsonArray items = obj.getAsJsonObject("artists").getAsJsonArray("items");
-			return (items.size() != 0) ? items.get(0).getAsJsonObject().get("id").getAsString() : null;
-		} catch (RuntimeException ex) {
-			throw new AssertionError(ex);
+		String key = artistNameQuery.trim().toLowerCase();
+		String cached = artistIdCache.get(key);
+		if (cached != null) {
+			return cached;
+		}
+
+		// Artists found before by their exact name need no request
+		String indexed = searchIndex.findArtistId(artistNameQuery);
+		if (indexed != null) {
+			artistIdCache.put(key, indexed);
+			return indexed;
 		}
+
+		// Prepare and send query, unless the same artist is being searched
+		String endpoint = apiURL + "/v1/search";
+		String params = "market=CA&type=artist&limit=1&q=" + artistNameQuery;
+		return Futures.awaitOrCancel(artistIdFlights.execute(key, () -> {
+			CompletableFuture<Artist> request = sendRequestAsync(endpoint, params, SpotifyJson::readFirstArtist);
+			return Futures.propagateCancellation(request, request.thenApply(artist -> {
+				if (artist == null) {
+					return null;
+				}
+
+				searchIndex.addArtist(artist);
+				artistIdCache.put(key, artist.getId());
+				return artist.getId();
+			}));
+		}));
 	}
 
 	/**
-	 * Acquires the album IDs of a given artist.
+	 * Acquires the album IDs of a given artist. Every page of results is
+	 * requested, so that no album is left out.
 	 *
 	 * @param artistId the ID of the artist.
 	 * @return a list of IDs corresponding to each album.
 	 * @throws java.io.IOException if an I/O error occurs.
 	 */
 	public List<String> getAlbumIds(String artistId) throws IOException {
-		List<String> ids = new ArrayList<>();
+		List<String> cached = albumIdsCache.get(artistId);
+		if (cached != null) {
+			return new ArrayList<>(cached);
+		}
 
-		try {
-			// Prepare and send query
-			String endpoint = String.format("https://api.spotify.com/v1/artists/%s/albums", artistId);
-			String params = "market=CA&limit=50";
-			String jsonOutput = sendRequest(endpoint, params);
-
-			// Parse result
-			JsonObject obj = new JsonParser().parse(jsonOutput).getAsJsonObject();
-			obj.get("items").getAsJsonArray().forEach(elm -> {
-				ids.add(elm.getAsJsonObject().get("id").getAsString());
-			});
+		// Concurrent calls for the same artist share the same pages
+		return new ArrayList<>(Futures.awaitOrCancel(albumIdsFlights.execute(artistId, () -> CompletableFuture.supplyAsync(() -> {
+			try {
+				return requestAlbumIds(artistId);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}, pagerExecutor))));
+	}
 
-		} catch (JsonSyntaxException ex) {
-			throw new AssertionError(ex);
+	private List<String> requestAlbumIds(String artistId) throws IOException {
+		// Prepare and send query, then follow the next pages
+		List<String> ids = new ArrayList<>();
+		String url = getAlbumIdsURL(artistId);
+		while (url != null) {
+			Page<String> page = sendRequest(url, "", SpotifyJson::readAlbumIdPage);
+			ids.addAll(page.getItems());
+			url = page.getNext();
 		}
 
-		return ids;
+		List<String> result = Collections.unmodifiableList(ids);
+		albumIdsCache.put(artistId, result);
+		return result;
+	}
+
+	/**
+	 * Retrieves the albums of a given artist incrementally. The returned pager
+	 * delivers albums in batches as soon as each batch is available, while the
+	 * following batches and pages are fetched in the background. The pager
+	 * must be closed once no longer needed.
+	 *
+	 * @param artistId the ID of the artist.
+	 * @return the pager over the discography of the artist.
+	 */
+	public DiscographyPager getDiscography(String artistId) {
+		return new DiscographyPager(this, artistId, pagerExecutor);
+	}
+
+	/**
+	 * Publishes the albums of a given artist, fetching them only as the
+	 * subscriber requests them. Cancelling the subscription aborts the
+	 * requests in flight.
+	 *
+	 * @param artistId the ID of the artist.
+	 * @return the publisher of the albums, in discography order.
+	 */
+	public Flow.Publisher<Album> publishDiscography(String artistId) {
+		return new DiscographyPublisher(this, artistId);
+	}
+
+	/**
+	 * Publishes the tracks of the albums of a given artist, fetching the
+	 * albums only as the subscriber requests their tracks.
+	 *
+	 * @param artistId the ID of the artist.
+	 * @return the publisher of the tracks, album by album.
+	 */
+	public Flow.Publisher<TrackData> publishTracks(String artistId) {
+		return new TrackPublisher(publishDiscography(artistId));
+	}
+
+	String getAlbumIdsURL(String artistId) {
+		return String.format("%s/v1/artists/%s/albums?market=CA&limit=50", apiURL, artistId);
+	}
+
+	CompletableFuture<Page<String>> getAlbumIdPageAsync(String url) {
+		return sendRequestAsync(url, "", SpotifyJson::readAlbumIdPage);
 	}
 
 	/**
@@ -184,88 +481,426 @@ public class SpotifyAPI {
 	 * @throws IOException if an I/O occurs.
 	 */
 	public Album getAlbumData(String albumId) throws IOException {
+		Album cached = albumCache.get(albumId);
+		if (cached != null) {
+			return cached;
+		}
 
-		try {
-			// Prepare and send query
-			String endpoint = String.format("https://api.spotify.com/v1/albums/%s", albumId);
-			String params = "market=CA";
-			String jsonOutput = sendRequest(endpoint, params);
-
-			// Parse result
-			JsonObject obj = new JsonParser().parse(jsonOutput).getAsJsonObject();
-			return parseAlbumJson(obj);
-		} catch (JsonSyntaxException ex) {
-			throw new AssertionError(ex);
+		// Prepare and send query, unless the album is already being fetched
+		String endpoint = String.format("%s/v1/albums/%s", apiURL, albumId);
+		String params = "market=CA";
+		int coverSize = coverLoader.getSize();
+		return Futures.awaitOrCancel(albumFlights.execute(albumId, () -> {
+			CompletableFuture<Album> request = sendRequestAsync(endpoint, params, r -> SpotifyJson.readAlbum(r, coverSize));
+			return Futures.propagateCancellation(request, request.thenCompose(this::completeTracks).thenApply(album -> {
+				if (loadCovers) {
+					coverLoader.load(album);
+				}
+
+				albumCache.put(albumId, album);
+				searchIndex.addAlbum(album);
+				return album;
+			}));
+		}));
+	}
+
+	private CompletableFuture<Album> completeTracks(Album album) {
+		return completeTracks(Collections.singletonList(album)).thenApply(albums -> album);
+	}
+
+	/**
+	 * Fetches the tracks missing from albums having more tracks than returned
+	 * along with them, such as box sets. The remaining pages of every album
+	 * are requested at once rather than by following their links, then
+	 * appended in order, so that tracks stay sorted by disc and number.
+	 *
+	 * @param albums the albums, not published yet.
+	 * @return a future completed with the same albums once complete.
+	 */
+	private CompletableFuture<List<Album>> completeTracks(List<Album> albums) {
+		Map<Album, List<CompletableFuture<Page<TrackData>>>> pages = new LinkedHashMap<>();
+		List<CompletableFuture<?>> requests = new ArrayList<>();
+		for (Album album : albums) {
+			TrackTable tracks = album.getTrackTable();
+			if (tracks.isComplete()) {
+				continue;
+			}
+
+			String endpoint = String.format("%s/v1/albums/%s/tracks", apiURL, album.getId());
+			List<CompletableFuture<Page<TrackData>>> albumPages = new ArrayList<>();
+			for (int offset = tracks.size(); offset < tracks.getTotal(); offset += MAX_TRACKS_PER_REQUEST) {
+				String params = "market=CA&offset=" + offset + "&limit=" + MAX_TRACKS_PER_REQUEST;
+				albumPages.add(sendRequestAsync(endpoint, params, SpotifyJson::readTrackPage));
+			}
+			pages.put(album, albumPages);
+			requests.addAll(albumPages);
+		}
+
+		if (requests.isEmpty()) {
+			return CompletableFuture.completedFuture(albums);
+		}
+
+		CompletableFuture<List<Album>> result = CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+			pages.forEach((album, albumPages) -> {
+				TrackTable merged = new TrackTable();
+				appendTracks(merged, album.getTracks());
+				for (CompletableFuture<Page<TrackData>> page : albumPages) {
+					appendTracks(merged, page.join().getItems());
+				}
+
+				merged.trimToSize();
+				album.setTrackTable(merged);
+			});
+			return albums;
+		});
+
+		// Do not leave pages running if one of them failed
+		requests.forEach(request -> request.whenComplete((v, ex) -> {
+			if (ex != null) {
+				result.completeExceptionally(ex);
+			}
+		}));
+		result.whenComplete((v, ex) -> {
+			if (ex != null) {
+				requests.forEach(request -> request.cancel(false));
+			}
+		});
+
+		return result;
+	}
+
+	private static void appendTracks(TrackTable table, List<TrackData> tracks) {
+		for (TrackData track : tracks) {
+			table.add(track.getName(), track.getId(), track.getLength(), track.getTrackNumber(), track.getPreviewURL());
 		}
 	}
 
 	/**
 	 * Retrieves album data for a given list of IDs. This method uses only one
-	 * API request and is therefore faster than calling
-	 * {@link #getAlbumData(java.lang.String)} for each single album.
+	 * API request per batch of 20 albums, and fetches up to
+	 * {@link #getBatchParallelism()} batches concurrently. It is therefore
+	 * much faster than calling {@link #getAlbumData(java.lang.String)} for
+	 * each single album. Albums resolved recently are not requested again.
 	 *
 	 * @param albumIds the list of album IDs.
 	 * @return the associated album objects, in the order supplied.
 	 * @throws IOException if an I/O occurs.
 	 */
 	public List<Album> getAlbumsData(List<String> albumIds) throws IOException {
+		return Futures.awaitOrCancel(getAlbumsDataAsync(albumIds));
+	}
 
-		List<Album> albums = new ArrayList<>();
+	/**
+	 * Retrieves album data for a given list of IDs without blocking the
+	 * calling thread. This is the asynchronous equivalent of
+	 * {@link #getAlbumsData(java.util.List)}.
+	 *
+	 * @param albumIds the list of album IDs.
+	 * @return a future completed with the associated album objects, in the
+	 * order supplied.
+	 */
+	public CompletableFuture<List<Album>> getAlbumsDataAsync(List<String> albumIds) {
+
+		// Only request the albums not resolved recently
+		Map<String, Album> resolved = new HashMap<>();
+		List<String> missingIds = new ArrayList<>();
+		for (String albumId : albumIds) {
+			Album cached = albumCache.get(albumId);
+			if (cached != null) {
+				resolved.put(albumId, cached);
+			} else if (!resolved.containsKey(albumId)) {
+				resolved.put(albumId, null);
+				missingIds.add(albumId);
+			}
+		}
 
-		try {
-			String params = "market=CA&ids=";
-			String endpoint = "https://api.spotify.com/v1/albums";
+		// Albums being fetched by another call are not requested twice
+		Map<String, CompletableFuture<Album>> pending = albumFlights.executeAll(missingIds, this::requestAlbums);
+		CompletableFuture<List<Album>> result = CompletableFuture.allOf(pending.values().toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+			pending.forEach((albumId, album) -> resolved.put(albumId, album.join()));
+
+			// Collect them in the order supplied, skipping unknown IDs
+			List<Album> albums = new ArrayList<>(albumIds.size());
+			for (String albumId : albumIds) {
+				Album album = resolved.get(albumId);
+				if (album != null) {
+					albums.add(album);
+				}
+			}
 
-			// Determine how many requests will be needed,
-			// since there is a maximum of 20 albums per request.
-			int numberOfRequests = (int) Math.ceil(albumIds.size() / 20.0);
+			return albums;
+		});
 
-			for (int i = 0; i < numberOfRequests; ++i) {
-				// Get sublist of albums to be requested in this iteration
-				List<String> sublist = albumIds.subList(20 * i, Math.min(albumIds.size(), 20 * i + 19));
+		// Do not leave requests running if one of the albums failed,
+		// or if the result is not needed anymore
+		pending.values().forEach(album -> album.whenComplete((v, ex) -> {
+			if (ex != null) {
+				result.completeExceptionally(ex);
+			}
+		}));
+		result.whenComplete((v, ex) -> {
+			if (ex != null) {
+				pending.values().forEach(album -> album.cancel(false));
+			}
+		});
 
-				// Prepare and send query
-				String str = sublist.toString().replace(" ", "");
-				String jsonOutput = sendRequest(endpoint, params + str.substring(1, str.length() - 1));
+		return result;
+	}
 
-				JsonObject obj = new JsonParser().parse(jsonOutput).getAsJsonObject();
-				for (JsonElement elmnt : obj.get("albums").getAsJsonArray()) {
-					albums.add(parseAlbumJson(elmnt.getAsJsonObject()));
+	/**
+	 * Requests albums in batches, returning one future per album. An album
+	 * missing from the response completes with null. A batch is cancelled
+	 * once all of its albums are cancelled.
+	 */
+	private Map<String, CompletableFuture<Album>> requestAlbums(List<String> albumIds) {
+		String params = "market=CA&ids=";
+		String endpoint = apiURL + "/v1/albums";
+		int coverSize = coverLoader.getSize();
+
+		// Split the IDs in batches, since there is a maximum
+		// of 20 albums per request.
+		List<List<String>> sublists = new ArrayList<>();
+		List<Supplier<CompletableFuture<List<Album>>>> batches = new ArrayList<>();
+		for (int i = 0; i < albumIds.size(); i += MAX_ALBUMS_PER_REQUEST) {
+			List<String> sublist = albumIds.subList(i, Math.min(albumIds.size(), i + MAX_ALBUMS_PER_REQUEST));
+			String ids = String.join(",", sublist);
+			sublists.add(sublist);
+			batches.add(() -> {
+				// Decoded from the stream, unless a pool is set to decode
+				// the albums of the response in parallel
+				ForkJoinPool pool = parsePool;
+				CompletableFuture<?> request;
+				CompletableFuture<List<Album>> parsed;
+				if (pool == null) {
+					parsed = sendRequestAsync(endpoint, params + ids, r -> SpotifyJson.readAlbums(r, coverSize));
+					request = parsed;
+				} else {
+					CompletableFuture<String> body = sendRequestAsync(endpoint, params + ids);
+					parsed = body.thenApply(b -> SpotifyJson.readAlbums(b, coverSize, pool));
+					request = body;
 				}
-			}
+				return Futures.propagateCancellation(request, parsed.thenCompose(this::completeTracks).thenApply(albums -> {
+					for (Album album : albums) {
+						// Covers are loaded in the background
+						if (loadCovers) {
+							coverLoader.load(album);
+						}
+						albumCache.put(album.getId(), album);
+						searchIndex.addAlbum(album);
+					}
+					return albums;
+				}));
+			});
+		}
 
-			// Parse result
-			return albums;
-		} catch (JsonSyntaxException ex) {
-			throw new AssertionError(ex);
+		// Fetch and decode batches concurrently
+		List<CompletableFuture<List<Album>>> responses = BatchFetcher.fetch(batches, batchParallelism);
+		Map<String, CompletableFuture<Album>> albums = new HashMap<>();
+		for (int i = 0; i < responses.size(); ++i) {
+			CompletableFuture<List<Album>> response = responses.get(i);
+			List<String> sublist = sublists.get(i);
+			AtomicInteger remaining = new AtomicInteger(sublist.size());
+			for (String albumId : sublist) {
+				CompletableFuture<Album> album = response.thenApply(list -> {
+					for (Album a : list) {
+						if (a.getId().equals(albumId)) {
+							return a;
+						}
+					}
+					return null;
+				});
+				album.whenComplete((v, ex) -> {
+					if (album.isCancelled() && remaining.decrementAndGet() == 0) {
+						response.cancel(true);
+					}
+				});
+				albums.put(albumId, album);
+			}
 		}
+
+		return albums;
 	}
 
-	private Album parseAlbumJson(JsonObject obj) throws IOException {
-		String albumName = obj.get("name").getAsString();
-		String artistName = obj.get("artists").getAsJsonArray().get(0).getAsJsonObject().get("name").getAsString();
-		String coverImageURL = obj.get("images").getAsJsonArray().get(0).getAsJsonObject().get("url").getAsString();
+	/**
+	 * Sets the size at which album covers are displayed. The cover variant
+	 * closest to this size is downloaded, and decoded at this size.
+	 *
+	 * @param coverSize the width and height of covers, in pixels.
+	 */
+	public void setCoverSize(int coverSize) {
+		coverLoader.setSize(coverSize);
+	}
 
-		// Fetch image
-		Image coverImage = (coverImageURL != null) ? new Image(coverImageURL) : null;
+	public int getCoverSize() {
+		return coverLoader.getSize();
+	}
 
-		// Parse tracks
-		List<TrackData> tracks = new ArrayList<>();
-		JsonArray tracksArray = obj.get("tracks").getAsJsonObject().get("items").getAsJsonArray();
-		for (JsonElement elmnt : tracksArray) {
-			JsonObject trackObj = elmnt.getAsJsonObject();
-			String trackName = trackObj.get("name").getAsString();
-			String trackId = trackObj.get("id").getAsString();
-			int length = trackObj.get("duration_ms").getAsInt() / 1000;
-			int trackNumber = trackObj.get("track_number").getAsInt();
+	/**
+	 * Starts loading the cover of an album which was not fetched by this API,
+	 * such as an album restored from a snapshot.
+	 *
+	 * @param album the album.
+	 */
+	public void loadCover(Album album) {
+		coverLoader.load(album);
+	}
 
-			JsonElement previewObj = trackObj.get("preview_url");
-			String previewURL = previewObj.isJsonNull() ? null : previewObj.getAsString();
+	/**
+	 * Loads the cover of an album ahead of the other covers, such as when the
+	 * album is about to be displayed.
+	 *
+	 * @param album the album.
+	 */
+	public void prefetchCover(Album album) {
+		coverLoader.loadFirst(album);
+	}
 
-			tracks.add(new TrackData(trackName, trackId, length, trackNumber, previewURL));
+	/**
+	 * Sets whether the covers of albums are loaded as soon as the albums are
+	 * fetched. Covers are decoded as JavaFX images, so they should not be
+	 * loaded when the JavaFX toolkit is not running.
+	 *
+	 * @param loadCovers true to load covers in the background.
+	 */
+	public void setLoadCovers(boolean loadCovers) {
+		this.loadCovers = loadCovers;
+	}
+
+	public boolean isLoadCovers() {
+		return loadCovers;
+	}
+
+	/**
+	 * Returns the metrics of this client.
+	 *
+	 * @return the metrics, which may be published through JMX.
+	 */
+	public ApiMetrics getMetrics() {
+		return metrics;
+	}
+
+	HttpTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * Returns the number of calls which shared a request already in flight,
+	 * instead of sending their own.
+	 */
+	long getCoalescedCount() {
+		return artistIdFlights.getJoinedCount() + albumIdsFlights.getJoinedCount() + albumFlights.getJoinedCount();
+	}
+
+	/**
+	 * Clears the in-memory caches of resolved artists and albums.
+	 */
+	public void clearCaches() {
+		artistIdCache.clear();
+		albumIdsCache.clear();
+		albumCache.clear();
+	}
+
+	/**
+	 * Returns the index of the names of the artists, albums and tracks
+	 * retrieved so far.
+	 *
+	 * @return the search index, filled as data is retrieved.
+	 */
+	public SearchIndex getSearchIndex() {
+		return searchIndex;
+	}
+
+	/**
+	 * Returns the cache of artist IDs, keyed by lower-case artist name.
+	 *
+	 * @return the cache used by {@link #getArtistId(java.lang.String)}.
+	 */
+	public LruCache<String, String> getArtistIdCache() {
+		return artistIdCache;
+	}
+
+	/**
+	 * Returns the cache of album IDs, keyed by artist ID.
+	 *
+	 * @return the cache used by {@link #getAlbumIds(java.lang.String)}.
+	 */
+	public LruCache<String, List<String>> getAlbumIdsCache() {
+		return albumIdsCache;
+	}
+
+	/**
+	 * Returns the cache of albums, keyed by album ID.
+	 *
+	 * @return the cache used by {@link #getAlbumsData(java.util.List)}.
+	 */
+	public LruCache<String, Album> getAlbumCache() {
+		return albumCache;
+	}
+
+	/**
+	 * Roughly estimates the memory used by an album, cover included.
+	 */
+	private long estimateSize(Album album) {
+		long size = album.getMemoryUsage();
+
+		// The cover may still be loading. Its encoded bytes are
+		// kept as well, and are roughly ten times smaller.
+		if (loadCovers && album.getCoverImageURL() != null) {
+			long pixels = (long) getCoverSize() * getCoverSize();
+			size += 4 * pixels + pixels / 2;
 		}
 
-		return new Album(artistName, albumName, coverImage, tracks);
+		return size;
+	}
+
+	/**
+	 * Sets the maximum number of album batches fetched concurrently by
+	 * {@link #getAlbumsData(java.util.List)}.
+	 *
+	 * @param batchParallelism the maximum number of requests in flight. Must
+	 * be at least 1.
+	 */
+	public void setBatchParallelism(int batchParallelism) {
+		if (batchParallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1: " + batchParallelism);
+		}
+
+		this.batchParallelism = batchParallelism;
+	}
+
+	public int getBatchParallelism() {
+		return batchParallelism;
+	}
+
+	/**
+	 * Sets the pool decoding the albums of each batch in parallel. By
+	 * default, there is none, and each batch is decoded directly from the
+	 * response stream. With a pool, the whole response is read into memory
+	 * first and split per album, which only pays off when decoding is the
+	 * bottleneck on a host with several cores.
+	 *
+	 * @param parsePool the pool, or null to decode from the stream.
+	 */
+	public void setParsePool(ForkJoinPool parsePool) {
+		this.parsePool = parsePool;
+	}
+
+	/**
+	 * Returns the pool decoding the albums of each batch in parallel.
+	 *
+	 * @return the pool, or null if batches are decoded from the stream.
+	 */
+	public ForkJoinPool getParsePool() {
+		return parsePool;
+	}
+
+	/**
+	 * Handles the body of a response.
+	 */
+	@FunctionalInterface
+	private interface BodyHandler<T> {
+
+		T handle(ApiResponse response) throws IOException;
 	}
 
 }
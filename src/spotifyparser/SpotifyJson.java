@@ -0,0 +1,630 @@
+package spotifyparser;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Streaming decoders for the Spotify Web API responses. Only the fields used
+ * by the application are read; every other subtree (such as
+ * {@code available_markets}) is skipped without being materialized.
+ */
+public final class SpotifyJson {
+
+	private SpotifyJson() {
+	}
+
+	/**
+	 * Decodes the access token from an authentication response.
+	 *
+	 * @param reader the reader.
+	 * @return the access token, or null if absent.
+	 * @throws IOException if the document could not be read.
+	 */
+	public static AccessToken readAccessToken(JsonReader reader) throws IOException {
+		String token = null;
+		long expiresIn = 3600;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "access_token":
+					token = reader.nextString();
+					break;
+				case "expires_in":
+					expiresIn = reader.nextLong();
+					break;
+				default:
+					reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		return (token != null) ? new AccessToken(token, expiresIn) : null;
+	}
+
+	/**
+	 * Decodes the ID of the first artist of an artist search response.
+	 *
+	 * @param reader the reader.
+	 * @return the artist ID, or null if no artist matched.
+	 * @throws IOException if the document could not be read.
+	 */
+	public static String readFirstArtistId(JsonReader reader) throws IOException {
+		Artist artist = readFirstArtist(reader);
+		return (artist != null) ? artist.getId() : null;
+	}
+
+	/**
+	 * Decodes the first artist of an artist search response.
+	 *
+	 * @param reader the reader.
+	 * @return the artist, or null if no artist matched.
+	 * @throws IOException if the document could not be read.
+	 */
+	public static Artist readFirstArtist(JsonReader reader) throws IOException {
+		Artist artist = null;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (!reader.nextName().equals("artists")) {
+				reader.skipValue();
+				continue;
+			}
+
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (!reader.nextName().equals("items")) {
+					reader.skipValue();
+					continue;
+				}
+
+				reader.beginArray();
+				while (reader.hasNext()) {
+					if (artist != null) {
+						reader.skipValue();
+						continue;
+					}
+
+					String id = null;
+					String name = null;
+					reader.beginObject();
+					while (reader.hasNext()) {
+						switch (reader.nextName()) {
+							case "id":
+								id = reader.nextString();
+								break;
+							case "name":
+								name = readNullableString(reader);
+								break;
+							default:
+								reader.skipValue();
+						}
+					}
+					reader.endObject();
+
+					if (id != null) {
+						artist = new Artist(id, name);
+					}
+				}
+				reader.endArray();
+			}
+			reader.endObject();
+		}
+		reader.endObject();
+
+		return artist;
+	}
+
+	/**
+	 * Decodes one page of an artist albums response.
+	 *
+	 * @param reader the reader.
+	 * @return the album IDs, in the order returned, and the URL of the
+	 * following page.
+	 * @throws IOException if the document could not be read.
+	 */
+	public static Page<String> readAlbumIdPage(JsonReader reader) throws IOException {
+		List<String> ids = new ArrayList<>();
+		String next = null;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "items":
+					ids.addAll(readIdArray(reader));
+					break;
+				case "next":
+					next = readNullableString(reader);
+					break;
+				default:
+					reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		return new Page<>(ids, next);
+	}
+
+	/**
+	 * Decodes one page of an album tracks response.
+	 *
+	 * @param reader the reader.
+	 * @return the tracks, in the order returned, and the URL of the following
+	 * page.
+	 * @throws IOException if the document could not be read.
+	 */
+	public static Page<TrackData> readTrackPage(JsonReader reader) throws IOException {
+		TrackTable tracks = new TrackTable();
+		String next = null;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "items":
+					readTracks(reader, tracks);
+					break;
+				case "next":
+					next = readNullableString(reader);
+					break;
+				default:
+					reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		tracks.trimToSize();
+		return new Page<>(tracks.asList(), next);
+	}
+
+	/**
+	 * Decodes a several albums response, i.e. an object with an
+	 * {@code albums} array.
+	 *
+	 * @param reader the reader.
+	 * @param coverSize the size at which covers are displayed, used to pick
+	 * the most appropriate cover image.
+	 * @return the albums, in the order returned.
+	 * @throws IOException if the document could not be read.
+	 */
+	public static List<Album> readAlbums(JsonReader reader, int coverSize) throws IOException {
+		AlbumTable table = new AlbumTable();
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (!reader.nextName().equals("albums")) {
+				reader.skipValue();
+				continue;
+			}
+
+			reader.beginArray();
+			while (reader.hasNext()) {
+				// Unknown IDs are returned as null
+				if (reader.peek() == JsonToken.NULL) {
+					reader.nextNull();
+				} else {
+					readAlbum(reader, coverSize, table);
+				}
+			}
+			reader.endArray();
+		}
+		reader.endObject();
+
+		// Albums of a batch share the same table
+		table.trimToSize();
+		List<Album> albums = new ArrayList<>(table.size());
+		for (int i = 0; i < table.size(); ++i) {
+			albums.add(table.get(i));
+		}
+		return albums;
+	}
+
+	/**
+	 * Decodes a several albums response held in memory, parsing its albums in
+	 * parallel. The document is first split on the boundaries of the elements
+	 * of its {@code albums} array, then each album is decoded on its own by
+	 * the given pool. Unlike {@link #readAlbums(JsonReader, int)}, the whole
+	 * document and a copy of each album are held in memory.
+	 *
+	 * @param document the JSON document.
+	 * @param coverSize the size at which covers are displayed, used to pick
+	 * the most appropriate cover image.
+	 * @param pool the pool decoding the albums.
+	 * @return the albums, in the order returned.
+	 * @throws AssertionError if the document is malformed.
+	 */
+	public static List<Album> readAlbums(String document, int coverSize, ForkJoinPool pool) {
+		// Splitting only pays off with several threads
+		if (pool.getParallelism() < 2) {
+			try (JsonReader reader = new JsonReader(new StringReader(document))) {
+				reader.setLenient(true);
+				return readAlbums(reader, coverSize);
+			} catch (IOException | IllegalStateException | NumberFormatException ex) {
+				throw new AssertionError(ex);
+			}
+		}
+
+		List<String> elements = splitArray(document, "albums");
+		AlbumTable[] parsed = new AlbumTable[elements.size()];
+		AlbumParseTask task = new AlbumParseTask(elements, coverSize, parsed, 0, elements.size());
+		if (elements.size() > 1) {
+			pool.invoke(task);
+		} else {
+			task.compute();
+		}
+
+		// Albums of a batch share the same table, filled in order
+		AlbumTable table = new AlbumTable();
+		for (AlbumTable album : parsed) {
+			table.add(album.getId(0), album.getArtistName(0), album.getAlbumName(0),
+					album.getCoverImageURL(0), album.getLargestCoverImageURL(0), album.getTracks(0));
+		}
+
+		table.trimToSize();
+		List<Album> albums = new ArrayList<>(table.size());
+		for (int i = 0; i < table.size(); ++i) {
+			albums.add(table.get(i));
+		}
+		return albums;
+	}
+
+	/**
+	 * Splits the objects of an array member of the root object of a document,
+	 * without decoding them. Elements other than objects, such as the null
+	 * returned for unknown IDs, are left out.
+	 */
+	static List<String> splitArray(String document, String name) {
+		List<String> elements = new ArrayList<>();
+		int depth = 0;
+		int stringStart = -1;
+		String lastString = null;
+		String memberName = null;
+		boolean inArray = false;
+		int elementStart = -1;
+
+		for (int i = 0; i < document.length(); ++i) {
+			char c = document.charAt(i);
+			if (stringStart >= 0) {
+				if (c == '\\') {
+					++i;
+				} else if (c == '"') {
+					if (depth == 1) {
+						lastString = document.substring(stringStart, i);
+					}
+					stringStart = -1;
+				}
+				continue;
+			}
+
+			switch (c) {
+				case '"':
+					stringStart = i + 1;
+					break;
+				case ':':
+					// Only names are followed by a colon, unlike string values
+					if (depth == 1) {
+						memberName = lastString;
+					}
+					break;
+				case ',':
+					if (depth == 1) {
+						memberName = null;
+					}
+					break;
+				case '{':
+				case '[':
+					if (inArray && depth == 2 && c == '{') {
+						elementStart = i;
+					} else if (depth == 1 && c == '[' && name.equals(memberName)) {
+						inArray = true;
+					}
+					++depth;
+					break;
+				case '}':
+				case ']':
+					--depth;
+					if (inArray && depth == 2 && c == '}') {
+						elements.add(document.substring(elementStart, i + 1));
+					} else if (inArray && depth == 1) {
+						inArray = false;
+					}
+					break;
+				default:
+			}
+		}
+
+		if (depth != 0 || stringStart >= 0) {
+			throw new AssertionError(new MalformedJsonException("Unterminated document"));
+		}
+		return elements;
+	}
+
+	/**
+	 * Decodes a range of album objects, each into its own table, splitting
+	 * the range in halves across the pool.
+	 */
+	private static class AlbumParseTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<String> elements;
+		private final int coverSize;
+		private final AlbumTable[] results;
+		private final int from;
+		private final int to;
+
+		AlbumParseTask(List<String> elements, int coverSize, AlbumTable[] results, int from, int to) {
+			this.elements = elements;
+			this.coverSize = coverSize;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new AlbumParseTask(elements, coverSize, results, from, middle),
+						new AlbumParseTask(elements, coverSize, results, middle, to));
+				return;
+			}
+
+			for (int i = from; i < to; ++i) {
+				try (JsonReader reader = new JsonReader(new StringReader(elements.get(i)))) {
+					reader.setLenient(true);
+					AlbumTable table = new AlbumTable();
+					readAlbum(reader, coverSize, table);
+					results[i] = table;
+				} catch (IOException | IllegalStateException | NumberFormatException ex) {
+					throw new AssertionError(ex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decodes a full album object. The cover image is not loaded; only its
+	 * URL is kept.
+	 *
+	 * @param reader the reader.
+	 * @param coverSize the size at which covers are displayed, used to pick
+	 * the most appropriate cover image.
+	 * @return the album.
+	 * @throws IOException if the document could not be read.
+	 */
+	public static Album readAlbum(JsonReader reader, int coverSize) throws IOException {
+		AlbumTable table = new AlbumTable();
+		int row = readAlbum(reader, coverSize, table);
+		table.trimToSize();
+		return table.get(row);
+	}
+
+	private static int readAlbum(JsonReader reader, int coverSize, AlbumTable table) throws IOException {
+		String albumId = null;
+		String albumName = null;
+		String artistName = null;
+		String[] coverImageURLs = new String[2];
+		TrackTable tracks = new TrackTable();
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "id":
+					albumId = reader.nextString();
+					break;
+				case "name":
+					albumName = reader.nextString();
+					break;
+				case "artists":
+					artistName = readFirstString(reader, "name");
+					break;
+				case "images":
+					readCoverURLs(reader, coverSize, coverImageURLs);
+					break;
+				case "tracks":
+					readFirstTrackPage(reader, tracks);
+					break;
+				default:
+					reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		tracks.trimToSize();
+		return table.add(albumId, artistName, albumName, coverImageURLs[0], coverImageURLs[1], tracks);
+	}
+
+	/**
+	 * Reads the first page of tracks of an album object. Its total number of
+	 * tracks is kept when more pages follow, so that they can be fetched.
+	 */
+	private static void readFirstTrackPage(JsonReader reader, TrackTable tracks) throws IOException {
+		String next = null;
+		int total = 0;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "items":
+					readTracks(reader, tracks);
+					break;
+				case "next":
+					next = readNullableString(reader);
+					break;
+				case "total":
+					total = reader.nextInt();
+					break;
+				default:
+					reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		if (next != null) {
+			tracks.setTotal(total);
+		}
+	}
+
+	/**
+	 * Reads an array of images. Stores first the URL of the smallest one at
+	 * least as large as the given size, or of the largest if there is none,
+	 * then the URL of the largest one.
+	 */
+	private static void readCoverURLs(JsonReader reader, int size, String[] urls) throws IOException {
+		String bestURL = null;
+		int bestWidth = -1;
+		String largestURL = null;
+		int largestWidth = -1;
+
+		reader.beginArray();
+		while (reader.hasNext()) {
+			String url = null;
+			int width = 0;
+
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				if (name.equals("url")) {
+					url = readNullableString(reader);
+				} else if (name.equals("width") && reader.peek() == JsonToken.NUMBER) {
+					width = reader.nextInt();
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+
+			if (url == null) {
+				continue;
+			}
+
+			if (largestURL == null || width > largestWidth) {
+				largestURL = url;
+				largestWidth = width;
+			}
+
+			boolean better;
+			if (bestURL == null) {
+				better = true;
+			} else if (bestWidth >= size) {
+				better = width >= size && width < bestWidth;
+			} else {
+				better = width > bestWidth;
+			}
+
+			if (better) {
+				bestURL = url;
+				bestWidth = width;
+			}
+		}
+		reader.endArray();
+
+		urls[0] = bestURL;
+		urls[1] = largestURL;
+	}
+
+	private static void readTracks(JsonReader reader, TrackTable tracks) throws IOException {
+		reader.beginArray();
+		while (reader.hasNext()) {
+			String trackName = null;
+			String trackId = null;
+			int length = 0;
+			int trackNumber = 0;
+			String previewURL = null;
+
+			reader.beginObject();
+			while (reader.hasNext()) {
+				switch (reader.nextName()) {
+					case "name":
+						trackName = reader.nextString();
+						break;
+					case "id":
+						trackId = reader.nextString();
+						break;
+					case "duration_ms":
+						length = reader.nextInt() / 1000;
+						break;
+					case "track_number":
+						trackNumber = reader.nextInt();
+						break;
+					case "preview_url":
+						previewURL = readNullableString(reader);
+						break;
+					default:
+						reader.skipValue();
+				}
+			}
+			reader.endObject();
+
+			tracks.add(trackName, trackId, length, trackNumber, previewURL);
+		}
+		reader.endArray();
+	}
+
+	/**
+	 * Reads an array of objects, and returns their {@code id} fields.
+	 */
+	private static List<String> readIdArray(JsonReader reader) throws IOException {
+		List<String> ids = new ArrayList<>();
+
+		reader.beginArray();
+		while (reader.hasNext()) {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (reader.nextName().equals("id")) {
+					ids.add(reader.nextString());
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+		}
+		reader.endArray();
+
+		return ids;
+	}
+
+	/**
+	 * Reads an array of objects, and returns the given string field of the
+	 * first one. The rest of the array is skipped.
+	 */
+	private static String readFirstString(JsonReader reader, String field) throws IOException {
+		String value = null;
+
+		reader.beginArray();
+		if (reader.hasNext()) {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (reader.nextName().equals(field)) {
+					value = readNullableString(reader);
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+		}
+
+		while (reader.hasNext()) {
+			reader.skipValue();
+		}
+		reader.endArray();
+
+		return value;
+	}
+
+	private static String readNullableString(JsonReader reader) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return null;
+		}
+
+		return reader.nextString();
+	}
+}
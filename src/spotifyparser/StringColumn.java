@@ -0,0 +1,61 @@
+package spotifyparser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A column of nullable strings, stored back to back as UTF-8 in a single
+ * array rather than as separate objects.
+ */
+final class StringColumn {
+
+	private byte[] data = new byte[64];
+	private int[] offsets = new int[9];
+	private final BitSet nulls = new BitSet();
+	private int size;
+
+	/**
+	 * Appends a string.
+	 *
+	 * @return the row of the string.
+	 */
+	int add(String value) {
+		if (size + 2 > offsets.length) {
+			offsets = Arrays.copyOf(offsets, offsets.length * 2);
+		}
+
+		int start = offsets[size];
+		if (value == null) {
+			nulls.set(size);
+			offsets[size + 1] = start;
+		} else {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			if (start + bytes.length > data.length) {
+				data = Arrays.copyOf(data, Math.max(data.length * 2, start + bytes.length));
+			}
+
+			System.arraycopy(bytes, 0, data, start, bytes.length);
+			offsets[size + 1] = start + bytes.length;
+		}
+
+		return size++;
+	}
+
+	String get(int row) {
+		if (nulls.get(row)) {
+			return null;
+		}
+
+		return new String(data, offsets[row], offsets[row + 1] - offsets[row], StandardCharsets.UTF_8);
+	}
+
+	void trimToSize() {
+		data = Arrays.copyOf(data, offsets[size]);
+		offsets = Arrays.copyOf(offsets, size + 1);
+	}
+
+	long getMemoryUsage() {
+		return 64 + data.length + 4L * offsets.length + nulls.size() / 8;
+	}
+}
@@ -0,0 +1,62 @@
+package spotifyparser;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns an index to each distinct string, up to a maximum number of
+ * strings. Strings are never removed, so looking them up takes no lock: only
+ * adding a string does.
+ */
+final class StringDictionary {
+
+	private final int maxSize;
+	private final Map<String, Integer> indexes = new ConcurrentHashMap<>();
+
+	// Written while holding this, and published again after every addition
+	private volatile String[] values = new String[16];
+	private int size;
+
+	StringDictionary(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Returns the index of a string, adding it if needed.
+	 *
+	 * @return the index, or -1 if the dictionary is full.
+	 */
+	int indexOf(String value) {
+		Integer index = indexes.get(value);
+		return (index != null) ? index : add(value);
+	}
+
+	private synchronized int add(String value) {
+		Integer index = indexes.get(value);
+		if (index != null) {
+			return index;
+		} else if (size >= maxSize) {
+			return -1;
+		}
+
+		String[] array = values;
+		if (size == array.length) {
+			array = Arrays.copyOf(array, size * 2);
+		}
+		array[size] = value;
+		values = array;
+
+		// Only visible once the string can be read
+		indexes.put(value, size);
+		return size++;
+	}
+
+	/**
+	 * Returns a string from its index, as returned by
+	 * {@link #indexOf(java.lang.String)}.
+	 */
+	String get(int index) {
+		return values[index];
+	}
+}
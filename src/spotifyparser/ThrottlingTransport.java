@@ -0,0 +1,372 @@
+package spotifyparser;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link HttpTransport} scheduling requests so that the API does not
+ * throttle them. Requests are limited by a token bucket, and by a number of
+ * requests in flight which adapts to the server: it slowly grows while
+ * latencies stay low, and is halved whenever the server answers with
+ * {@code 429 Too Many Requests}. Throttled requests, server errors and
+ * connection failures are retried with jittered exponential backoff, and
+ * every request waits for the delay requested by {@code Retry-After}. Delays
+ * longer than {@link #MAX_RETRY_AFTER_MILLIS} are not waited for: the
+ * throttled request fails with its response instead.
+ */
+public class ThrottlingTransport implements HttpTransport {
+
+	static final ThrottlingTransport SHARED = new ThrottlingTransport(UrlConnectionTransport.SHARED, 20, 20, 1, 16, 4);
+
+	private static final long BASE_BACKOFF_MILLIS = 250;
+	private static final long MAX_BACKOFF_MILLIS = 8000;
+
+	/**
+	 * The longest {@code Retry-After} delay waited for, in milliseconds.
+	 */
+	static final long MAX_RETRY_AFTER_MILLIS = 30000;
+
+	private final HttpTransport delegate;
+	private final double ratePerSecond;
+	private final double burst;
+	private final int minConcurrency;
+	private final int maxConcurrency;
+	private final int maxRetries;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition changed = lock.newCondition();
+
+	// Guarded by lock
+	private double tokens;
+	private long lastRefill = System.nanoTime();
+	private long blockedUntil = System.nanoTime();
+	private double concurrencyLimit;
+	private int inFlight;
+	private long baselineLatency = Long.MAX_VALUE;
+
+	private final AtomicLong throttled = new AtomicLong();
+	private final AtomicLong retries = new AtomicLong();
+
+	/**
+	 * Creates a throttling transport.
+	 *
+	 * @param delegate the transport actually sending the requests.
+	 * @param ratePerSecond the sustained number of requests per second.
+	 * @param burst the number of requests which may be sent at once after an
+	 * idle period.
+	 * @param minConcurrency the lowest limit of requests in flight.
+	 * @param maxConcurrency the highest limit of requests in flight.
+	 * @param maxRetries how many times a failed request is retried.
+	 */
+	public ThrottlingTransport(HttpTransport delegate, double ratePerSecond, double burst,
+			int minConcurrency, int maxConcurrency, int maxRetries) {
+		this.delegate = delegate;
+		this.ratePerSecond = ratePerSecond;
+		this.burst = burst;
+		this.minConcurrency = minConcurrency;
+		this.maxConcurrency = maxConcurrency;
+		this.maxRetries = maxRetries;
+
+		this.tokens = burst;
+		this.concurrencyLimit = minConcurrency + (maxConcurrency - minConcurrency) / 4.0;
+	}
+
+	@Override
+	public ApiResponse send(ApiRequest request) throws IOException {
+		for (int attempt = 0;; ++attempt) {
+			acquire(request);
+
+			long start = System.nanoTime();
+			ApiResponse response;
+			try {
+				response = delegate.send(request);
+			} catch (InterruptedIOException ex) {
+				release(Outcome.FAILED, 0);
+				throw ex;
+			} catch (IOException ex) {
+				release(Outcome.FAILED, 0);
+				if (attempt >= maxRetries) {
+					throw ex;
+				}
+
+				long delay = backoff(attempt);
+				retries.incrementAndGet();
+				ApiMetrics.recordRetry(request.getURL(), attempt, -1, delay);
+				sleep(delay, request);
+				continue;
+			}
+
+			long latency = System.nanoTime() - start;
+			int code = response.getStatusCode();
+
+			if (code == 429) {
+				throttled.incrementAndGet();
+				long delay = parseRetryAfter(response.getHeader("Retry-After"));
+				if (delay < 0) {
+					delay = backoff(attempt);
+				}
+
+				// Other requests are paused no longer than the cap, and this
+				// one fails rather than waiting for longer
+				long maxDelay = TimeUnit.MILLISECONDS.toNanos(MAX_RETRY_AFTER_MILLIS);
+				release(Outcome.THROTTLED, Math.min(delay, maxDelay));
+
+				if (attempt >= maxRetries || delay > maxDelay) {
+					return response;
+				}
+
+				response.close();
+				retries.incrementAndGet();
+				ApiMetrics.recordRetry(request.getURL(), attempt, code, delay);
+				continue;
+			}
+
+			if (code >= 500 && attempt < maxRetries) {
+				release(Outcome.FAILED, 0);
+				response.close();
+
+				long delay = backoff(attempt);
+				retries.incrementAndGet();
+				ApiMetrics.recordRetry(request.getURL(), attempt, code, delay);
+				sleep(delay, request);
+				continue;
+			}
+
+			release(Outcome.COMPLETED, latency);
+			return response;
+		}
+	}
+
+	@Override
+	public Executor getExecutor() {
+		return delegate.getExecutor();
+	}
+
+	/**
+	 * Returns the transport actually sending the requests.
+	 *
+	 * @return the underlying transport.
+	 */
+	HttpTransport getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Returns the current limit of requests in flight.
+	 *
+	 * @return the limit.
+	 */
+	public int getConcurrencyLimit() {
+		lock.lock();
+		try {
+			return (int) concurrencyLimit;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of requests the server answered with a 429.
+	 *
+	 * @return the number of throttled requests.
+	 */
+	public long getThrottledCount() {
+		return throttled.get();
+	}
+
+	/**
+	 * Returns the number of times a request was sent again.
+	 *
+	 * @return the number of retries.
+	 */
+	public long getRetryCount() {
+		return retries.get();
+	}
+
+	/**
+	 * Waits until a request may be sent, unless it is cancelled.
+	 */
+	private void acquire(ApiRequest request) throws InterruptedIOException {
+		Runnable unregister = wakeOnCancel(request);
+		lock.lock();
+		try {
+			while (true) {
+				checkCancelled(request);
+				long now = System.nanoTime();
+
+				// Refill the bucket
+				tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerSecond / 1e9);
+				lastRefill = now;
+
+				long wait;
+				if (now < blockedUntil) {
+					wait = blockedUntil - now;
+				} else if (inFlight >= (int) concurrencyLimit) {
+					// Wait for a request to complete
+					wait = Long.MAX_VALUE;
+				} else if (tokens < 1) {
+					wait = (long) ((1 - tokens) / ratePerSecond * 1e9);
+				} else {
+					tokens -= 1;
+					inFlight++;
+					return;
+				}
+
+				if (wait == Long.MAX_VALUE) {
+					changed.await();
+				} else {
+					changed.awaitNanos(wait);
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to send a request");
+		} finally {
+			lock.unlock();
+			unregister.run();
+		}
+	}
+
+	/**
+	 * Releases a request slot, and adapts the limits to the outcome.
+	 *
+	 * @param value the latency of completed requests, or the delay requested
+	 * by the server for throttled requests, in nanoseconds.
+	 */
+	private void release(Outcome outcome, long value) {
+		lock.lock();
+		try {
+			inFlight--;
+
+			switch (outcome) {
+				case COMPLETED:
+					// The baseline slowly drifts up, so that it follows
+					// lasting changes of network conditions
+					baselineLatency = (baselineLatency == Long.MAX_VALUE) ? value
+							: Math.min(value, baselineLatency + baselineLatency / 100);
+					if (value <= 2 * baselineLatency) {
+						// Additive increase
+						concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1 / concurrencyLimit);
+					} else {
+						// Latency is growing: the server is getting saturated
+						concurrencyLimit = Math.max(minConcurrency, concurrencyLimit * 0.95);
+					}
+					break;
+				case THROTTLED:
+					// Multiplicative decrease, and pause every request
+					concurrencyLimit = Math.max(minConcurrency, concurrencyLimit / 2);
+					blockedUntil = Math.max(blockedUntil, System.nanoTime() + value);
+					tokens = 0;
+					break;
+				default:
+					break;
+			}
+
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Computes a random backoff delay, growing exponentially with the number
+	 * of attempts.
+	 *
+	 * @return the delay, in nanoseconds.
+	 */
+	private static long backoff(int attempt) {
+		long cap = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt, 16));
+		return TimeUnit.MILLISECONDS.toNanos(ThreadLocalRandom.current().nextLong(cap / 2, cap + 1));
+	}
+
+	/**
+	 * Parses a {@code Retry-After} header, given either in seconds or as a
+	 * date.
+	 *
+	 * @return the delay in nanoseconds, or -1 if absent or invalid.
+	 */
+	static long parseRetryAfter(String value) {
+		if (value == null) {
+			return -1;
+		}
+
+		value = value.trim();
+		try {
+			return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(value)));
+		} catch (NumberFormatException ex) {
+			// Not a number: try a date
+		}
+
+		try {
+			ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+			return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toNanos());
+		} catch (DateTimeParseException ex) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Waits before retrying a request, unless it is cancelled.
+	 */
+	private void sleep(long nanos, ApiRequest request) throws InterruptedIOException {
+		long deadline = System.nanoTime() + nanos;
+		Runnable unregister = wakeOnCancel(request);
+		lock.lock();
+		try {
+			// Also woken up by every released request
+			for (long remaining = nanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+				checkCancelled(request);
+				changed.awaitNanos(remaining);
+			}
+			checkCancelled(request);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to retry a request");
+		} finally {
+			lock.unlock();
+			unregister.run();
+		}
+	}
+
+	/**
+	 * Wakes up the threads waiting on this transport once a request is
+	 * cancelled, so that it stops waiting.
+	 *
+	 * @return the handle unregistering the wake up.
+	 */
+	private Runnable wakeOnCancel(ApiRequest request) {
+		if (request.getCancellation() == null) {
+			return () -> {
+			};
+		}
+
+		return request.getCancellation().onCancel(() -> {
+			lock.lock();
+			try {
+				changed.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		});
+	}
+
+	private static void checkCancelled(ApiRequest request) throws InterruptedIOException {
+		if (request.getCancellation() != null && request.getCancellation().isCancelled()) {
+			throw new InterruptedIOException("Request cancelled: " + request.getURL());
+		}
+	}
+
+	private enum Outcome {
+		COMPLETED, THROTTLED, FAILED
+	}
+}
@@ -0,0 +1,166 @@
+package spotifyparser;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a valid access token for any number of threads. The token is renewed
+ * in the background shortly before it expires. When a renewal is needed
+ * right away, such as after the server rejected a token, concurrent callers
+ * share a single request instead of each sending their own.
+ */
+public class TokenManager {
+
+	/**
+	 * How long before expiry the token is renewed in the background, at
+	 * most. Short-lived tokens are renewed after three quarters of their
+	 * lifetime instead.
+	 */
+	private static final long REFRESH_MARGIN_SECONDS = 120;
+
+	/**
+	 * Minimum delay between a renewal and the next background one, so that
+	 * tokens expiring almost immediately do not cause a renewal loop.
+	 */
+	private static final long MIN_RENEWAL_DELAY_SECONDS = 10;
+
+	/**
+	 * Below this remaining lifetime, a token is not handed out anymore.
+	 */
+	private static final long MIN_REMAINING_SECONDS = 5;
+
+	/**
+	 * Delay before retrying a failed background renewal.
+	 */
+	private static final long RETRY_DELAY_SECONDS = 15;
+
+	private final TokenSource source;
+	private final ScheduledExecutorService scheduler;
+
+	private volatile AccessToken current;
+	private CompletableFuture<AccessToken> pending;
+
+	/**
+	 * Creates a token manager. No token is requested until first needed.
+	 *
+	 * @param source obtains new tokens from the server.
+	 */
+	public TokenManager(TokenSource source) {
+		this.source = source;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new UrlConnectionTransport.DaemonThreadFactory("spotify-token"));
+	}
+
+	/**
+	 * Returns a valid token, requesting one if there is none yet or if the
+	 * current one is about to expire.
+	 *
+	 * @return the token.
+	 * @throws IOException if a new token could not be obtained.
+	 */
+	public String getToken() throws IOException {
+		AccessToken token = current;
+		if (token != null && !token.expiresWithin(MIN_REMAINING_SECONDS, TimeUnit.SECONDS)) {
+			return token.getValue();
+		}
+
+		return Futures.await(renew(token)).getValue();
+	}
+
+	/**
+	 * Returns a new token after the server rejected the given one. If another
+	 * thread already renewed it, the renewed token is returned directly.
+	 *
+	 * @param rejected the token rejected by the server.
+	 * @return the new token.
+	 * @throws IOException if a new token could not be obtained.
+	 */
+	public String getTokenAfterRejection(String rejected) throws IOException {
+		AccessToken token = current;
+		if (token != null && !token.getValue().equals(rejected)) {
+			return token.getValue();
+		}
+
+		return Futures.await(renew(token)).getValue();
+	}
+
+	/**
+	 * Renews the token, unless it was already replaced. Only one renewal is
+	 * performed at a time; concurrent callers all wait for the same one.
+	 */
+	private CompletableFuture<AccessToken> renew(AccessToken stale) {
+		CompletableFuture<AccessToken> future;
+		synchronized (this) {
+			if (current != stale && current != null) {
+				return CompletableFuture.completedFuture(current);
+			}
+
+			if (pending != null) {
+				return pending;
+			}
+
+			future = new CompletableFuture<>();
+			pending = future;
+		}
+
+		try {
+			AccessToken token = source.requestToken();
+			synchronized (this) {
+				current = token;
+			}
+
+			long lifetime = token.getRemaining(TimeUnit.SECONDS);
+			long margin = Math.min(REFRESH_MARGIN_SECONDS, lifetime / 4);
+			scheduleRenewal(token, Math.max(MIN_RENEWAL_DELAY_SECONDS, lifetime - margin));
+			future.complete(token);
+		} catch (IOException | RuntimeException ex) {
+			future.completeExceptionally(ex);
+		} catch (Error err) {
+			future.completeExceptionally(err);
+			throw err;
+		} finally {
+			synchronized (this) {
+				pending = null;
+			}
+		}
+
+		return future;
+	}
+
+	private void scheduleRenewal(AccessToken token, long delaySeconds) {
+		scheduler.schedule(() -> {
+			if (current != token) {
+				return;
+			}
+
+			try {
+				Futures.await(renew(token));
+			} catch (IOException | RuntimeException ex) {
+				System.err.println("Could not renew the access token");
+				ex.printStackTrace(System.err);
+
+				// The token is still valid for a while: try again
+				if (!token.expiresWithin(MIN_REMAINING_SECONDS, TimeUnit.SECONDS)) {
+					scheduleRenewal(token, RETRY_DELAY_SECONDS);
+				}
+			}
+		}, delaySeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Obtains new tokens from the server.
+	 */
+	@FunctionalInterface
+	public interface TokenSource {
+
+		/**
+		 * Requests a new token.
+		 *
+		 * @return the token.
+		 * @throws IOException if the token could not be obtained.
+		 */
+		AccessToken requestToken() throws IOException;
+	}
+}
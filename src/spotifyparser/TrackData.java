@@ -2,51 +2,54 @@ package spotifyparser;
 
 import java.util.Objects;
 
+/**
+ * A track, viewed over one row of a {@link TrackTable}. Values are read from
+ * the table on each access.
+ */
 public class TrackData {
 
-	private final String name;
-	private final String id;
-	private final int length;
-	private final int trackNumber;
-	private final String previewURL;
+	private final TrackTable table;
+	private final int row;
 
 	public TrackData(String name, String id, int length, int trackNumber, String previewURL) {
-		this.name = name;
-		this.id = id;
-		this.length = length;
-		this.trackNumber = trackNumber;
-		this.previewURL = previewURL;
+		this.table = new TrackTable();
+		this.row = table.add(name, id, length, trackNumber, previewURL);
+	}
+
+	TrackData(TrackTable table, int row) {
+		this.table = table;
+		this.row = row;
 	}
 
 	public int getTrackNumber() {
-		return trackNumber;
+		return table.getTrackNumber(row);
 	}
 
 	public String getPreviewURL() {
-		return previewURL;
+		return table.getPreviewURL(row);
 	}
 	
 	public boolean hasPreview() {
-		return previewURL != null;
+		return getPreviewURL() != null;
 	}
 
 	public String getName() {
-		return name;
+		return table.getName(row);
 	}
 
 	public String getId() {
-		return id;
+		return table.getId(row);
 	}
 
 	public int getLength() {
-		return length;
+		return table.getLength(row);
 	}
 
 	@Override
 	public int hashCode() {
 		int hash = 7;
-		hash = 97 * hash + Objects.hashCode(this.name);
-		hash = 97 * hash + Objects.hashCode(this.id);
+		hash = 97 * hash + Objects.hashCode(getName());
+		hash = 97 * hash + Objects.hashCode(getId());
 		return hash;
 	}
 
@@ -61,8 +64,12 @@ public class TrackData {
 		}
 
 		TrackData other = (TrackData) obj;
-		return this.name.equals(other.name)
-				&& this.id.equals(other.id);
+		if (this.table == other.table && this.row == other.row) {
+			return true;
+		}
+
+		return Objects.equals(getName(), other.getName())
+				&& Objects.equals(getId(), other.getId());
 	}
 
 }
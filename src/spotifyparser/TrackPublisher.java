@@ -0,0 +1,147 @@
+package spotifyparser;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the tracks of the albums of another publisher, in order. The next
+ * album is only requested once the tracks of the previous one were all
+ * requested, so that the demand of the subscriber throttles the albums
+ * fetched. Cancelling the subscription cancels the subscription to the
+ * albums.
+ *
+ * @see SpotifyAPI#publishTracks(java.lang.String)
+ */
+public class TrackPublisher implements Flow.Publisher<TrackData> {
+
+	private final Flow.Publisher<Album> albums;
+
+	/**
+	 * Creates a publisher.
+	 *
+	 * @param albums the publisher of the albums.
+	 */
+	public TrackPublisher(Flow.Publisher<Album> albums) {
+		this.albums = albums;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super TrackData> subscriber) {
+		albums.subscribe(new TrackSubscription(subscriber));
+	}
+
+	private static class TrackSubscription implements Flow.Subscription, Flow.Subscriber<Album> {
+
+		private final Flow.Subscriber<? super TrackData> subscriber;
+		private final Queue<TrackData> tracks = new ConcurrentLinkedQueue<>();
+		private final AtomicLong requested = new AtomicLong();
+		private final AtomicInteger wip = new AtomicInteger();
+		private volatile Flow.Subscription upstream;
+		private volatile boolean albumRequested;
+		private volatile boolean upstreamDone;
+		private volatile Throwable error;
+		private volatile boolean cancelled;
+		private volatile Throwable invalidRequest;
+
+		// Only accessed while draining
+		private boolean done;
+
+		TrackSubscription(Flow.Subscriber<? super TrackData> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			upstream = subscription;
+			subscriber.onSubscribe(this);
+			drain();
+		}
+
+		@Override
+		public void onNext(Album album) {
+			tracks.addAll(album.getTracks());
+			albumRequested = false;
+			drain();
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+			upstreamDone = true;
+			drain();
+		}
+
+		@Override
+		public void onComplete() {
+			upstreamDone = true;
+			drain();
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				invalidRequest = new IllegalArgumentException("Non-positive request: " + n);
+			} else {
+				// Saturates at Long.MAX_VALUE, meaning unbounded
+				requested.accumulateAndGet(n, (a, b) -> (a + b < 0) ? Long.MAX_VALUE : a + b);
+			}
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			drain();
+		}
+
+		private void drain() {
+			if (wip.getAndIncrement() != 0) {
+				return;
+			}
+
+			int missed = 1;
+			do {
+				drainOnce();
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		private void drainOnce() {
+			if (done || upstream == null) {
+				return;
+			} else if (cancelled || invalidRequest != null) {
+				done = true;
+				tracks.clear();
+				upstream.cancel();
+				if (!cancelled) {
+					subscriber.onError(invalidRequest);
+				}
+				return;
+			}
+
+			while (requested.get() > 0 && !tracks.isEmpty() && !cancelled) {
+				if (requested.get() != Long.MAX_VALUE) {
+					requested.decrementAndGet();
+				}
+				subscriber.onNext(tracks.poll());
+			}
+
+			if (cancelled) {
+				// Cancelled on the next loop, as the subscriber called cancel()
+				return;
+			} else if (tracks.isEmpty() && upstreamDone) {
+				done = true;
+				if (error != null) {
+					subscriber.onError(error);
+				} else {
+					subscriber.onComplete();
+				}
+			} else if (tracks.isEmpty() && requested.get() > 0 && !albumRequested && !upstreamDone) {
+				albumRequested = true;
+				upstream.request(1);
+			}
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package spotifyparser;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Tracks stored by column rather than as separate objects: lengths and track
+ * numbers are primitive arrays, names are packed as UTF-8, IDs as base62
+ * digits and preview URLs without their common prefix. {@link TrackData} is a
+ * view over one row.
+ * <p>
+ * A table is filled by a single thread, and may be read concurrently once
+ * published.
+ */
+public class TrackTable {
+
+	private final StringColumn names = new StringColumn();
+	private final IdColumn ids = new IdColumn();
+	private final UrlColumn previewURLs = new UrlColumn();
+	private int[] lengths = new int[8];
+	private int[] trackNumbers = new int[8];
+	private int size;
+	private int total;
+
+	/**
+	 * Appends a track.
+	 *
+	 * @param name the name of the track.
+	 * @param id the Spotify ID of the track.
+	 * @param length the length of the track, in seconds.
+	 * @param trackNumber the number of the track in its album.
+	 * @param previewURL the URL of the preview of the track, or null.
+	 * @return the row of the track.
+	 */
+	public int add(String name, String id, int length, int trackNumber, String previewURL) {
+		if (size == lengths.length) {
+			lengths = Arrays.copyOf(lengths, Math.max(8, size * 2));
+			trackNumbers = Arrays.copyOf(trackNumbers, Math.max(8, size * 2));
+		}
+
+		names.add(name);
+		ids.add(id);
+		previewURLs.add(previewURL);
+		lengths[size] = length;
+		trackNumbers[size] = trackNumber;
+		return size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of tracks of the album, which may be more than the
+	 * tracks in this table when they were returned in several pages.
+	 *
+	 * @return the total number of tracks.
+	 */
+	int getTotal() {
+		return Math.max(total, size);
+	}
+
+	void setTotal(int total) {
+		this.total = total;
+	}
+
+	/**
+	 * Returns whether this table holds every track of the album.
+	 *
+	 * @return false if some pages of tracks are still to be fetched.
+	 */
+	boolean isComplete() {
+		return total <= size;
+	}
+
+	/**
+	 * Returns a view over a track.
+	 *
+	 * @param row the row of the track.
+	 * @return the track.
+	 */
+	public TrackData get(int row) {
+		if (row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException("Row: " + row + ", size: " + size);
+		}
+
+		return new TrackData(this, row);
+	}
+
+	/**
+	 * Returns the tracks of this table as a list. Its elements are created on
+	 * access, and the list reflects rows added later.
+	 *
+	 * @return an unmodifiable view over the tracks.
+	 */
+	public List<TrackData> asList() {
+		return new TrackList();
+	}
+
+	/**
+	 * Releases the capacity reserved for future rows.
+	 */
+	public void trimToSize() {
+		names.trimToSize();
+		ids.trimToSize();
+		previewURLs.trimToSize();
+		lengths = Arrays.copyOf(lengths, size);
+		trackNumbers = Arrays.copyOf(trackNumbers, size);
+	}
+
+	/**
+	 * Roughly estimates the memory used by this table.
+	 *
+	 * @return the size of the table, in bytes.
+	 */
+	public long getMemoryUsage() {
+		return 64 + names.getMemoryUsage() + ids.getMemoryUsage() + previewURLs.getMemoryUsage()
+				+ 4L * (lengths.length + trackNumbers.length);
+	}
+
+	String getName(int row) {
+		return names.get(row);
+	}
+
+	String getId(int row) {
+		return ids.get(row);
+	}
+
+	String getPreviewURL(int row) {
+		return previewURLs.get(row);
+	}
+
+	int getLength(int row) {
+		return lengths[row];
+	}
+
+	int getTrackNumber(int row) {
+		return trackNumbers[row];
+	}
+
+	private class TrackList extends AbstractList<TrackData> implements RandomAccess {
+
+		@Override
+		public TrackData get(int index) {
+			return TrackTable.this.get(index);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package spotifyparser;
+
+import java.util.Arrays;
+
+/**
+ * A column of nullable URLs. The directory and query string of each URL,
+ * which are shared by most URLs of the API (such as
+ * {@code https://p.scdn.co/mp3-preview/}), are stored once for the whole
+ * process, and only the rest of each URL is stored in the column.
+ */
+final class UrlColumn {
+
+	private static final StringDictionary AFFIXES = new StringDictionary(4096);
+
+	private int[] prefixes = new int[8];
+	private int[] queries = new int[8];
+	private final StringColumn tails = new StringColumn();
+	private int size;
+
+	/**
+	 * Appends a URL.
+	 *
+	 * @return the row of the URL.
+	 */
+	int add(String url) {
+		if (size == prefixes.length) {
+			prefixes = Arrays.copyOf(prefixes, Math.max(8, size * 2));
+			queries = Arrays.copyOf(queries, Math.max(8, size * 2));
+		}
+
+		if (url == null) {
+			prefixes[size] = -1;
+			queries[size] = -1;
+			tails.add(null);
+			return size++;
+		}
+
+		int query = url.indexOf('?');
+		int end = (query >= 0) ? query : url.length();
+		int slash = url.lastIndexOf('/', end - 1);
+
+		// Affixes are kept in the tail once the dictionary is full
+		int prefix = AFFIXES.indexOf(url.substring(0, slash + 1));
+		prefixes[size] = prefix;
+		queries[size] = (query >= 0) ? AFFIXES.indexOf(url.substring(query)) : -1;
+
+		int start = (prefix >= 0) ? slash + 1 : 0;
+		tails.add(url.substring(start, (queries[size] >= 0) ? end : url.length()));
+		return size++;
+	}
+
+	String get(int row) {
+		String tail = tails.get(row);
+		if (tail == null) {
+			return null;
+		}
+
+		String prefix = (prefixes[row] >= 0) ? AFFIXES.get(prefixes[row]) : "";
+		String query = (queries[row] >= 0) ? AFFIXES.get(queries[row]) : "";
+		return prefix + tail + query;
+	}
+
+	void trimToSize() {
+		prefixes = Arrays.copyOf(prefixes, size);
+		queries = Arrays.copyOf(queries, size);
+		tails.trimToSize();
+	}
+
+	long getMemoryUsage() {
+		return 48 + 8L * size + tails.getMemoryUsage();
+	}
+}
@@ -0,0 +1,190 @@
+package spotifyparser;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A {@link HttpTransport} backed by {@link HttpURLConnection}. Connections are
+ * kept alive and pooled by the JDK as long as every response body is read and
+ * closed, which this class ensures for error responses as well. Responses
+ * are requested compressed, and decompressed before being returned, so that
+ * callers always read the plain body. Asynchronous requests run on a bounded
+ * pool of daemon threads.
+ */
+public class UrlConnectionTransport implements HttpTransport {
+
+	/**
+	 * Maximum number of idle connections kept alive per host.
+	 */
+	private static final int MAX_IDLE_CONNECTIONS = 20;
+
+	static {
+		// Must be set before the JDK's keep-alive cache is first used
+		if (System.getProperty("http.maxConnections") == null) {
+			System.setProperty("http.maxConnections", Integer.toString(MAX_IDLE_CONNECTIONS));
+		}
+	}
+
+	static final UrlConnectionTransport SHARED = new UrlConnectionTransport(8);
+
+	private final ExecutorService executor;
+	private final int connectTimeout;
+	private final int readTimeout;
+
+	/**
+	 * Creates a transport with the default timeouts.
+	 *
+	 * @param threads the number of threads used for asynchronous requests.
+	 */
+	public UrlConnectionTransport(int threads) {
+		this(threads, 10_000, 30_000);
+	}
+
+	/**
+	 * Creates a transport.
+	 *
+	 * @param threads the number of threads used for asynchronous requests.
+	 * @param connectTimeout the connection timeout, in milliseconds.
+	 * @param readTimeout the read timeout, in milliseconds.
+	 */
+	public UrlConnectionTransport(int threads, int connectTimeout, int readTimeout) {
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+		this.executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("spotify-http"));
+	}
+
+	@Override
+	public ApiResponse send(ApiRequest request) throws IOException {
+		// Open connection
+		URL requestURL = new URL(request.getURL());
+		HttpURLConnection connection = (HttpURLConnection) requestURL.openConnection();
+		connection.setConnectTimeout(connectTimeout);
+		connection.setReadTimeout(readTimeout);
+		connection.setRequestMethod(request.getMethod());
+
+		// JSON compresses about ten times
+		connection.setRequestProperty("Accept-Encoding", "gzip");
+		for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+			connection.setRequestProperty(header.getKey(), header.getValue());
+		}
+
+		// Closing the connection aborts any blocking read or write
+		Cancellation cancellation = request.getCancellation();
+		Runnable unregister = (cancellation != null) ? cancellation.onCancel(connection::disconnect) : () -> {
+		};
+
+		try {
+			if (cancellation != null && cancellation.isCancelled()) {
+				throw new InterruptedIOException("Request cancelled: " + request.getURL());
+			}
+
+			// Send data
+			if (request.getBody() != null) {
+				connection.setDoOutput(true);
+				try (OutputStream os = connection.getOutputStream()) {
+					os.write(request.getBody());
+				}
+			}
+
+			// Get response. Error bodies must be consumed too for the
+			// connection to be returned to the pool.
+			int code = connection.getResponseCode();
+			InputStream stream = (code >= 400) ? connection.getErrorStream() : connection.getInputStream();
+			Map<String, List<String>> headers = connection.getHeaderFields();
+			if (stream == null || !hasBody(request.getMethod(), code)) {
+				// Reading the gzip header of an empty body would fail
+				stream = (stream != null) ? stream : new ByteArrayInputStream(new byte[0]);
+			} else if ("gzip".equalsIgnoreCase(connection.getContentEncoding()) && connection.getContentLengthLong() != 0) {
+				stream = new GZIPInputStream(stream, 8192);
+			}
+
+			// Bodies are always handed decoded, including the cached
+			// ones a 304 stands for
+			if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+				headers = withoutEncoding(headers);
+			}
+
+			// Once closed, the connection may be reused by another request
+			// and must not be aborted anymore
+			InputStream body = new FilterInputStream(stream) {
+				@Override
+				public void close() throws IOException {
+					unregister.run();
+					super.close();
+				}
+			};
+
+			return new ApiResponse(code, headers, body);
+		} catch (IOException | RuntimeException ex) {
+			unregister.run();
+			if (cancellation != null && cancellation.isCancelled()) {
+				InterruptedIOException cancelled = new InterruptedIOException("Request cancelled: " + request.getURL());
+				cancelled.initCause(ex);
+				throw cancelled;
+			}
+			throw ex;
+		}
+	}
+
+	/**
+	 * Checks whether a response may have a body, as HEAD requests and some
+	 * statuses never have one, even with a {@code Content-Encoding}.
+	 */
+	private static boolean hasBody(String method, int code) {
+		return !method.equals("HEAD") && code >= 200 && code != 204 && code != 304;
+	}
+
+	/**
+	 * Removes the headers describing the compressed body, which do not apply
+	 * to the decompressed one.
+	 */
+	private static Map<String, List<String>> withoutEncoding(Map<String, List<String>> headers) {
+		Map<String, List<String>> decoded = new HashMap<>();
+		headers.forEach((name, values) -> {
+			if (name == null || !(name.equalsIgnoreCase("Content-Encoding") || name.equalsIgnoreCase("Content-Length"))) {
+				decoded.put(name, values);
+			}
+		});
+		return decoded;
+	}
+
+	@Override
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Creates named daemon threads, so that background work never prevents
+	 * the application from exiting.
+	 */
+	static class DaemonThreadFactory implements ThreadFactory {
+
+		private final String prefix;
+		private final AtomicInteger counter = new AtomicInteger();
+
+		DaemonThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, prefix + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package spotifyparser;
+
+import com.google.gson.stream.JsonReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks of the main operations of {@link SpotifyAPI} against a
+ * {@link StubServer}, so that changes can be compared with reproducible
+ * numbers. Each benchmark reports its operations per second, and the bytes
+ * allocated per operation from the GC profiler ({@code gc.alloc.rate.norm}).
+ * <p>
+ * Usage, from the test classes: {@code java -cp
+ * build/classes:build/test/classes:lib/* spotifyparser.ApiBenchmark
+ * [latency in ms] [429 rate]}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApiBenchmark {
+
+	/**
+	 * Latency added by the server to each response, in milliseconds.
+	 */
+	@Param("0")
+	public long latency;
+
+	/**
+	 * Proportion of requests answered with 429 by the server.
+	 */
+	@Param("0")
+	public double throttleRate;
+
+	private StubServer server;
+	private SpotifyAPI api;
+	private String apiURL;
+	private final List<String> albumIds = new ArrayList<>();
+	private byte[] albumsPayload;
+	private String albumsDocument;
+
+	private int artistCounter;
+
+	public static void main(String[] args) throws RunnerException {
+		OptionsBuilder options = new OptionsBuilder();
+		options.include(ApiBenchmark.class.getName() + "\\.")
+				.addProfiler(GCProfiler.class);
+		if (args.length > 0) {
+			options.param("latency", args[0]);
+		}
+		if (args.length > 1) {
+			options.param("throttleRate", args[1]);
+		}
+
+		new Runner(options.build()).run();
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		server = new StubServer(0);
+		server.setLatency(latency, TimeUnit.MILLISECONDS);
+		apiURL = server.getBaseURL();
+
+		// No disk cache, and no rate limit other than the server's
+		HttpTransport transport = new ThrottlingTransport(UrlConnectionTransport.SHARED, 1e6, 1e6, 1, 64, 4);
+		api = new SpotifyAPI(transport, apiURL, apiURL);
+		api.setLoadCovers(false);
+		api.authenticate();
+
+		albumIds.addAll(api.getAlbumIds(api.getArtistId("Benchmark Artist")));
+		albumsPayload = api.sendRequest(apiURL + "/v1/albums",
+				"ids=" + String.join(",", albumIds.subList(0, SpotifyAPI.MAX_ALBUMS_PER_REQUEST))).getBytes(StandardCharsets.UTF_8);
+		albumsDocument = new String(albumsPayload, StandardCharsets.UTF_8);
+
+		// Only throttle the measured requests
+		server.setThrottleRate(throttleRate);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		System.out.println("Requests served: " + server.getRequestCount() + ", throttled: " + server.getThrottledCount());
+		for (ApiMetrics.Statistics statistics : api.getMetrics().getEndpoints()) {
+			System.out.println(statistics);
+		}
+		System.out.println(api.getMetrics().getExecutorWait());
+
+		server.close();
+	}
+
+	@Benchmark
+	public String sendRequest() throws IOException {
+		return api.sendRequest(apiURL + "/v1/albums/" + albumIds.get(0), "");
+	}
+
+	@Benchmark
+	public List<Album> parseAlbumJson() throws IOException {
+		try (InputStream in = new ByteArrayInputStream(albumsPayload);
+				JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			return SpotifyJson.readAlbums(reader, 300);
+		}
+	}
+
+	@Benchmark
+	public List<Album> parseAlbumsParallel() {
+		return SpotifyJson.readAlbums(albumsDocument, 300, ForkJoinPool.commonPool());
+	}
+
+	@Benchmark
+	public List<Album> getAlbumsData() throws IOException {
+		api.getAlbumCache().clear();
+		return api.getAlbumsData(albumIds);
+	}
+
+	@Benchmark
+	public List<Album> loadArtist() throws IOException {
+		// A different artist each time, so that nothing is cached
+		String artistId = api.getArtistId("Artist " + artistCounter++);
+		return api.getAlbumsData(api.getAlbumIds(artistId));
+	}
+}
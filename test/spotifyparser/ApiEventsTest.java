@@ -0,0 +1,67 @@
+package spotifyparser;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ApiEventsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private StubServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new StubServer(0);
+		server.setDiscographySize(5, 3);
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+	}
+
+	@Test
+	public void requestEventsLastAsLongAsTheRequest() throws IOException {
+		SpotifyAPI api = new SpotifyAPI(UrlConnectionTransport.SHARED, server.getBaseURL(), server.getBaseURL());
+		api.setLoadCovers(false);
+		api.authenticate();
+
+		Path file = folder.getRoot().toPath().resolve("api.jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("spotifyparser.Request").withThreshold(Duration.ZERO);
+			recording.start();
+
+			server.setLatency(100, TimeUnit.MILLISECONDS);
+			api.getAlbumIds(api.getArtistId("Artist"));
+
+			recording.stop();
+			recording.dump(file);
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+				.filter(e -> e.getEventType().getName().equals("spotifyparser.Request"))
+				.collect(Collectors.toList());
+		assertFalse(events.isEmpty());
+		for (RecordedEvent event : events) {
+			assertEquals(200, event.getInt("status"));
+			assertTrue(event.getDuration().toMillis() >= 100);
+			assertTrue(event.getDuration().toNanos() >= event.getLong("latency"));
+		}
+	}
+}
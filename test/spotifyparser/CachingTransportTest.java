@@ -0,0 +1,98 @@
+package spotifyparser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CachingTransportTest {
+
+	private static final String URL = "https://api.spotify.com/v1/albums/b1";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Serves a body which must always be revalidated, answering with 304
+	 * while its ETag matches.
+	 */
+	private class RevalidatingServer implements HttpTransport {
+
+		final String body = "v1";
+		volatile boolean evictOnRevalidation;
+
+		@Override
+		public synchronized ApiResponse send(ApiRequest request) throws IOException {
+			String etag = "\"" + body + "\"";
+			Map<String, List<String>> headers = new HashMap<>();
+			headers.put("ETag", Arrays.asList(etag));
+			headers.put("Cache-Control", Arrays.asList("max-age=0"));
+
+			if (etag.equals(request.getHeaders().get("If-None-Match"))) {
+				if (evictOnRevalidation) {
+					// As if evicted by another request meanwhile
+					evictOnRevalidation = false;
+					Files.delete(folder.getRoot().toPath().resolve(CachingTransport.keyOf(URL) + ".body"));
+				}
+				return new ApiResponse(304, headers, new ByteArrayInputStream(new byte[0]));
+			}
+			return new ApiResponse(200, headers, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+		}
+
+		@Override
+		public Executor getExecutor() {
+			return Runnable::run;
+		}
+	}
+
+	@Test
+	public void unchangedResponseIsRevalidated() throws IOException {
+		RevalidatingServer server = new RevalidatingServer();
+		CachingTransport transport = new CachingTransport(server, folder.getRoot().toPath(), 1024 * 1024);
+
+		assertEquals("v1", get(transport));
+		assertEquals("v1", get(transport));
+		assertEquals(1, transport.getMissCount());
+		assertEquals(1, transport.getRevalidationCount());
+	}
+
+	@Test
+	public void responseEvictedDuringRevalidationIsStoredAgain() throws IOException {
+		RevalidatingServer server = new RevalidatingServer();
+		CachingTransport transport = new CachingTransport(server, folder.getRoot().toPath(), 1024 * 1024);
+		assertEquals("v1", get(transport));
+
+		server.evictOnRevalidation = true;
+		assertEquals("v1", get(transport));
+		assertEquals(2, transport.getMissCount());
+
+		// Stored again, so only revalidated from now on
+		assertEquals("v1", get(transport));
+		assertEquals(2, transport.getMissCount());
+		assertEquals(1, transport.getRevalidationCount());
+	}
+
+	private static String get(HttpTransport transport) throws IOException {
+		try (ApiResponse response = transport.send(ApiRequest.get(URL))) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			InputStream in = response.getBody();
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				bytes.write(buffer, 0, n);
+			}
+			return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+}
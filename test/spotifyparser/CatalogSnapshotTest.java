@@ -0,0 +1,79 @@
+package spotifyparser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CatalogSnapshotTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void snapshotIsReadBackIdentically() throws IOException {
+		TrackTable tracks = new TrackTable();
+		tracks.add("Nature Boy", "t1", 300, 1, "https://p.scdn.co/mp3-preview/t1");
+		tracks.add("Ship Ahoy", "t2", 200, 2, null);
+		AlbumTable table = new AlbumTable();
+		table.add("b1", "Kurt Elling", "The Messenger", "https://i.scdn.co/image/b1", "https://i.scdn.co/image/b1-640", tracks);
+		Album album = table.get(0);
+		album.setCoverData(new byte[]{1, 2, 3});
+		Album other = new Album("b2", null, "Untitled", null, Collections.<TrackData>emptyList());
+
+		Path file = folder.getRoot().toPath().resolve("catalog.snapshot");
+		new CatalogSnapshot("kurt elling", "a1", Arrays.asList(album, other), 1).write(file);
+		CatalogSnapshot snapshot = CatalogSnapshot.read(file);
+
+		assertEquals("kurt elling", snapshot.getArtistName());
+		assertEquals("a1", snapshot.getArtistId());
+		assertEquals(1, snapshot.getAlbumIndex());
+		assertEquals(2, snapshot.getAlbums().size());
+
+		Album read = snapshot.getAlbums().get(0);
+		assertEquals("b1", read.getId());
+		assertEquals("Kurt Elling", read.getArtistName());
+		assertEquals("https://i.scdn.co/image/b1", read.getCoverImageURL());
+		assertEquals("https://i.scdn.co/image/b1-640", read.getLargestCoverImageURL());
+		assertEquals(album.getTracks(), read.getTracks());
+		assertEquals("https://p.scdn.co/mp3-preview/t1", read.getTracks().get(0).getPreviewURL());
+		assertNull(read.getTracks().get(1).getPreviewURL());
+		assertArrayEquals(new byte[]{1, 2, 3}, read.getCoverData());
+
+		assertNull(snapshot.getAlbums().get(1).getArtistName());
+		assertNull(snapshot.getAlbums().get(1).getCoverData());
+	}
+
+	@Test
+	public void missingSnapshotIsNull() throws IOException {
+		assertNull(CatalogSnapshot.read(folder.getRoot().toPath().resolve("none.snapshot")));
+	}
+
+	@Test(expected = IOException.class)
+	public void truncatedSnapshotIsRejected() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("catalog.snapshot");
+		Album album = new Album("b1", "Artist", "Album", null, Collections.<TrackData>emptyList());
+		new CatalogSnapshot("artist", "a1", Collections.singletonList(album), 0).write(file);
+
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 6));
+		CatalogSnapshot.read(file);
+	}
+
+	@Test
+	public void snapshotIsReplaced() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("catalog.snapshot");
+		new CatalogSnapshot("first", "a1", Collections.<Album>emptyList(), 0).write(file);
+		CatalogSnapshot.read(file);
+		new CatalogSnapshot("second", "a2", Collections.<Album>emptyList(), 0).write(file);
+
+		assertEquals("second", CatalogSnapshot.read(file).getArtistName());
+	}
+}
@@ -0,0 +1,87 @@
+package spotifyparser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CoverExporterTest {
+
+	private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 1, 2, 3};
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Answers with the URL requested after a JPEG header, and records it.
+	 */
+	private final List<String> requested = new CopyOnWriteArrayList<>();
+	private final HttpTransport transport = new HttpTransport() {
+		@Override
+		public ApiResponse send(ApiRequest request) throws IOException {
+			requested.add(request.getURL());
+			byte[] url = request.getURL().getBytes(StandardCharsets.UTF_8);
+			byte[] body = Arrays.copyOf(JPEG, JPEG.length + url.length);
+			System.arraycopy(url, 0, body, JPEG.length, url.length);
+			return new ApiResponse(200, Collections.emptyMap(), new ByteArrayInputStream(body));
+		}
+
+		@Override
+		public Executor getExecutor() {
+			return Runnable::run;
+		}
+	};
+
+	@Test
+	public void largestCoverIsSaved() throws IOException {
+		AlbumTable table = new AlbumTable();
+		table.add("b1", "Artist", "Small", "https://i.scdn.co/image/300", "https://i.scdn.co/image/640", new TrackTable());
+		Album album = table.get(0);
+		album.setCoverData(JPEG);
+
+		Path directory = folder.getRoot().toPath();
+		CoverExporter.Result result = new CoverExporter(transport, 1).export(Collections.singletonList(album), directory, null);
+
+		assertEquals(1, result.getWrittenCount());
+		assertEquals(Collections.singletonList("https://i.scdn.co/image/640"), requested);
+		byte[] saved = Files.readAllBytes(directory.resolve("Small.jpg"));
+		assertEquals("https://i.scdn.co/image/640",
+				new String(saved, JPEG.length, saved.length - JPEG.length, StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void coverDisplayedAtFullSizeIsNotDownloadedAgain() throws IOException {
+		Album album = new Album("b1", "Artist", "Large", "https://i.scdn.co/image/640", Collections.<TrackData>emptyList());
+		album.setCoverData(JPEG);
+
+		Path directory = folder.getRoot().toPath();
+		CoverExporter exporter = new CoverExporter(transport, 1);
+		exporter.export(Collections.singletonList(album), directory, null);
+		CoverExporter.Result again = exporter.export(Collections.singletonList(album), directory, null);
+
+		assertEquals(Collections.emptyList(), requested);
+		assertEquals(1, again.getUnchangedCount());
+		assertArrayEquals(JPEG, Files.readAllBytes(directory.resolve("Large.jpg")));
+	}
+
+	@Test
+	public void coverNotLoadedYetIsDownloaded() throws IOException {
+		Album album = new Album("b1", "Artist", "Pending", "https://i.scdn.co/image/640", Collections.<TrackData>emptyList());
+		CoverExporter.Result result = new CoverExporter(transport, 1).export(Collections.singletonList(album),
+				folder.getRoot().toPath(), null);
+
+		assertEquals(1, result.getWrittenCount());
+		assertEquals(Collections.singletonList("https://i.scdn.co/image/640"), requested);
+	}
+}
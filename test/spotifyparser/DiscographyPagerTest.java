@@ -0,0 +1,71 @@
+package spotifyparser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiscographyPagerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private StubServer server;
+	private SpotifyAPI api;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new StubServer(0);
+		server.setDiscographySize(45, 3);
+		api = new SpotifyAPI(UrlConnectionTransport.SHARED, server.getBaseURL(), server.getBaseURL());
+		api.setLoadCovers(false);
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+	}
+
+	@Test(timeout = 10000)
+	public void everyAlbumIsPaged() throws IOException {
+		List<String> ids = api.getAlbumIds(api.getArtistId("Artist"));
+		List<String> paged = new ArrayList<>();
+		try (DiscographyPager pager = api.getDiscography(api.getArtistId("Artist"))) {
+			while (pager.hasNext()) {
+				for (Album album : pager.next()) {
+					paged.add(album.getId());
+				}
+			}
+		}
+
+		assertEquals(ids, paged);
+	}
+
+	@Test(timeout = 10000)
+	public void malformedResponseReachesTheConsumer() throws IOException {
+		Path fixtures = folder.getRoot().toPath();
+		Files.createDirectories(fixtures.resolve("v1"));
+		Files.write(fixtures.resolve("v1/albums.json"), "{\"albums\":[{\"id\":".getBytes(StandardCharsets.UTF_8));
+		String artistId = api.getArtistId("Artist");
+		server.setFixtures(fixtures);
+
+		Throwable failure = null;
+		try (DiscographyPager pager = api.getDiscography(artistId)) {
+			while (pager.hasNext()) {
+				pager.next();
+			}
+		} catch (IOException | AssertionError ex) {
+			failure = ex;
+		}
+		assertNotNull("The malformed response was not reported", failure);
+	}
+}
@@ -0,0 +1,127 @@
+package spotifyparser;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DiscographyPublisherTest {
+
+	private StubServer server;
+	private SpotifyAPI api;
+	private String artistId;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new StubServer(0);
+		server.setDiscographySize(100, 12);
+		api = new SpotifyAPI(UrlConnectionTransport.SHARED, server.getBaseURL(), server.getBaseURL());
+		api.setLoadCovers(false);
+		artistId = api.getArtistId("Artist");
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+	}
+
+	@Test
+	public void nothingIsFetchedWithoutDemand() throws InterruptedException {
+		long before = server.getRequestCount();
+		RecordingSubscriber<Album> subscriber = new RecordingSubscriber<>();
+		api.publishDiscography(artistId).subscribe(subscriber);
+
+		Thread.sleep(200);
+		assertEquals(before, server.getRequestCount());
+		assertTrue(subscriber.items.isEmpty());
+	}
+
+	@Test
+	public void onlyRequestedAlbumsAreDelivered() throws InterruptedException {
+		RecordingSubscriber<Album> subscriber = new RecordingSubscriber<>();
+		api.publishDiscography(artistId).subscribe(subscriber);
+		subscriber.subscription.request(3);
+
+		Thread.sleep(500);
+		assertEquals(3, subscriber.items.size());
+
+		// A single page of IDs and a single batch of albums
+		subscriber.subscription.cancel();
+		assertTrue(server.getRequestCount() <= 4);
+	}
+
+	@Test
+	public void everyAlbumIsDeliveredInOrder() throws Exception {
+		List<String> ids = api.getAlbumIds(artistId);
+		RecordingSubscriber<Album> subscriber = new RecordingSubscriber<>();
+		api.publishDiscography(artistId).subscribe(subscriber);
+		subscriber.subscription.request(Long.MAX_VALUE);
+
+		assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+		assertNull(subscriber.error);
+		assertEquals(100, subscriber.items.size());
+		for (int i = 0; i < ids.size(); ++i) {
+			assertEquals(ids.get(i), subscriber.items.get(i).getId());
+		}
+	}
+
+	@Test
+	public void tracksAreDeliveredAsRequested() throws Exception {
+		RecordingSubscriber<TrackData> subscriber = new RecordingSubscriber<>();
+		api.publishTracks(artistId).subscribe(subscriber);
+		subscriber.subscription.request(30);
+
+		Thread.sleep(500);
+		assertEquals(30, subscriber.items.size());
+
+		subscriber.subscription.request(Long.MAX_VALUE);
+		assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+		assertEquals(1200, subscriber.items.size());
+	}
+
+	@Test
+	public void nonPositiveRequestFails() throws InterruptedException {
+		RecordingSubscriber<Album> subscriber = new RecordingSubscriber<>();
+		api.publishDiscography(artistId).subscribe(subscriber);
+		subscriber.subscription.request(0);
+
+		assertTrue(subscriber.done.await(1, TimeUnit.SECONDS));
+		assertTrue(subscriber.error instanceof IllegalArgumentException);
+	}
+
+	private static class RecordingSubscriber<T> implements Flow.Subscriber<T> {
+
+		final List<T> items = new CopyOnWriteArrayList<>();
+		final CountDownLatch done = new CountDownLatch(1);
+		volatile Flow.Subscription subscription;
+		volatile Throwable error;
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(T item) {
+			items.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+			done.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			done.countDown();
+		}
+	}
+}
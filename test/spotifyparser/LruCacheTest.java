@@ -0,0 +1,45 @@
+package spotifyparser;
+
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class LruCacheTest {
+
+	@Test
+	public void leastRecentlyUsedEntryIsEvicted() {
+		LruCache<String, String> cache = new LruCache<>(2, Long.MAX_VALUE, 1, TimeUnit.HOURS, String::length);
+		cache.put("a", "1");
+		cache.put("b", "2");
+		cache.get("a");
+		cache.put("c", "3");
+
+		assertEquals("1", cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals("3", cache.get("c"));
+	}
+
+	@Test
+	public void entriesAreEvictedByWeight() {
+		LruCache<String, String> cache = new LruCache<>(100, 10, 1, TimeUnit.HOURS, String::length);
+		cache.put("a", "123456");
+		cache.put("b", "123456");
+
+		assertEquals(1, cache.size());
+		assertEquals(6, cache.getWeight());
+		assertNull(cache.get("a"));
+	}
+
+	@Test
+	public void expiredEntriesAreMisses() throws InterruptedException {
+		LruCache<String, String> cache = new LruCache<>(100, Long.MAX_VALUE, 10, TimeUnit.MILLISECONDS, String::length);
+		cache.put("a", "1");
+		assertEquals("1", cache.get("a"));
+
+		Thread.sleep(30);
+		assertNull(cache.get("a"));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+}
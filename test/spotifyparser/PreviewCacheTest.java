@@ -0,0 +1,99 @@
+package spotifyparser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.concurrent.Executor;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PreviewCacheTest {
+
+	private static final String FIRST = "https://p.scdn.co/mp3-preview/first";
+	private static final String SECOND = "https://p.scdn.co/mp3-preview/second";
+	private static final String THIRD = "https://p.scdn.co/mp3-preview/third";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Answers every request with a body of 100 bytes.
+	 */
+	private final HttpTransport transport = new HttpTransport() {
+		@Override
+		public ApiResponse send(ApiRequest request) throws IOException {
+			return new ApiResponse(200, Collections.emptyMap(), new ByteArrayInputStream(new byte[100]));
+		}
+
+		@Override
+		public Executor getExecutor() {
+			return Runnable::run;
+		}
+	};
+
+	@Test
+	public void leastRecentlyUsedPreviewIsEvicted() throws IOException {
+		PreviewCache cache = new PreviewCache(transport, folder.getRoot().toPath(), 250, 1);
+		cache.fetch(FIRST).join();
+		cache.fetch(SECOND).join();
+		assertNotNull(cache.getCached(FIRST));
+		cache.fetch(THIRD).join();
+
+		assertNotNull(cache.getCached(FIRST));
+		assertNull(cache.getCached(SECOND));
+		assertNotNull(cache.getCached(THIRD));
+	}
+
+	@Test
+	public void accessOrderSurvivesARestart() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		PreviewCache cache = new PreviewCache(transport, directory, 250, 1);
+		Path first = cache.fetch(FIRST).join();
+		Path second = cache.fetch(SECOND).join();
+		Files.setLastModifiedTime(first, FileTime.fromMillis(1000));
+		Files.setLastModifiedTime(second, FileTime.fromMillis(2000));
+		cache.getCached(FIRST);
+
+		PreviewCache restarted = new PreviewCache(transport, directory, 250, 1);
+		restarted.fetch(THIRD).join();
+		assertNotNull(restarted.getCached(FIRST));
+		assertNull(restarted.getCached(SECOND));
+	}
+
+	@Test
+	public void pinnedPreviewIsKept() throws IOException {
+		PreviewCache cache = new PreviewCache(transport, folder.getRoot().toPath(), 250, 1);
+		Path first = cache.fetch(FIRST).join();
+		cache.pin(FIRST);
+		cache.fetch(SECOND).join();
+		cache.fetch(THIRD).join();
+
+		assertTrue(Files.exists(first));
+		assertNotNull(cache.getCached(FIRST));
+		assertNull(cache.getCached(SECOND));
+		assertNotNull(cache.getCached(THIRD));
+	}
+
+	@Test
+	public void unpinnedPreviewIsEvictable() throws IOException {
+		PreviewCache cache = new PreviewCache(transport, folder.getRoot().toPath(), 250, 1);
+		Path first = cache.fetch(FIRST).join();
+		cache.pin(FIRST);
+		cache.pin(FIRST);
+		cache.unpin(FIRST);
+		cache.unpin(FIRST);
+		cache.fetch(SECOND).join();
+		cache.fetch(THIRD).join();
+
+		assertNull(cache.getCached(FIRST));
+		assertFalse(Files.exists(first));
+	}
+}
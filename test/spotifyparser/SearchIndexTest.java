@@ -0,0 +1,60 @@
+package spotifyparser;
+
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class SearchIndexTest {
+
+	private static SearchIndex createIndex() {
+		SearchIndex index = new SearchIndex(1000);
+		index.addArtist(new Artist("a1", "Kurt Elling"));
+		index.addArtist(new Artist("a2", "Beyonc\u00e9"));
+		index.addAlbum(new Album("b1", "Kurt Elling", "The Messenger", null, Arrays.asList(
+				new TrackData("Nature Boy", "t1", 300, 1, null),
+				new TrackData("Ship Ahoy", "t2", 200, 2, null))));
+		return index;
+	}
+
+	@Test
+	public void artistsAreFoundRegardlessOfCaseAndAccents() {
+		SearchIndex index = createIndex();
+		assertEquals("a1", index.findArtistId("kurt  ELLING"));
+		assertEquals("a2", index.findArtistId("Beyonce"));
+		assertNull(index.findArtistId("Kurt"));
+	}
+
+	@Test
+	public void anyWordOfANameIsCompleted() {
+		SearchIndex index = createIndex();
+		List<SearchIndex.Entry> artists = index.complete("ell", SearchIndex.Kind.ARTIST, 10);
+		assertEquals(1, artists.size());
+		assertEquals("Kurt Elling", artists.get(0).getName());
+
+		List<SearchIndex.Entry> tracks = index.complete("boy", SearchIndex.Kind.TRACK, 10);
+		assertEquals("t1", tracks.get(0).getId());
+		assertEquals("b1", tracks.get(0).getAlbumId());
+	}
+
+	@Test
+	public void typosAreTolerated() {
+		SearchIndex index = createIndex();
+		List<SearchIndex.Entry> results = index.search("Kurt Eling", null, 10);
+		assertTrue(!results.isEmpty());
+		assertEquals("a1", results.get(0).getId());
+	}
+
+	@Test
+	public void indexStopsGrowingAtItsLimit() {
+		SearchIndex index = new SearchIndex(2);
+		index.addArtist(new Artist("a1", "One"));
+		index.addArtist(new Artist("a2", "Two"));
+		index.addArtist(new Artist("a3", "Three"));
+
+		assertEquals(2, index.size());
+		assertNull(index.findArtistId("Three"));
+	}
+}
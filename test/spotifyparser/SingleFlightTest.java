@@ -0,0 +1,92 @@
+package spotifyparser;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+	@Test
+	public void concurrentCallsShareOneRequest() {
+		SingleFlight<String, String> flights = new SingleFlight<>();
+		CompletableFuture<String> source = new CompletableFuture<>();
+		AtomicInteger requests = new AtomicInteger();
+
+		CompletableFuture<String> first = flights.execute("a", () -> {
+			requests.incrementAndGet();
+			return source;
+		});
+		CompletableFuture<String> second = flights.execute("a", () -> {
+			requests.incrementAndGet();
+			return new CompletableFuture<>();
+		});
+
+		source.complete("result");
+		assertEquals(1, requests.get());
+		assertEquals("result", first.join());
+		assertEquals("result", second.join());
+		assertEquals(1, flights.getJoinedCount());
+	}
+
+	@Test
+	public void completedRequestsAreNotShared() {
+		SingleFlight<String, String> flights = new SingleFlight<>();
+		flights.execute("a", () -> CompletableFuture.completedFuture("first")).join();
+
+		assertEquals("second", flights.execute("a", () -> CompletableFuture.completedFuture("second")).join());
+		assertEquals(2, flights.getStartedCount());
+	}
+
+	@Test
+	public void cancellingOneWaiterKeepsTheRequest() {
+		SingleFlight<String, String> flights = new SingleFlight<>();
+		CompletableFuture<String> source = new CompletableFuture<>();
+
+		CompletableFuture<String> first = flights.execute("a", () -> source);
+		CompletableFuture<String> second = flights.execute("a", () -> source);
+		first.cancel(true);
+		assertFalse(source.isCancelled());
+
+		source.complete("result");
+		assertEquals("result", second.join());
+	}
+
+	@Test
+	public void cancellingEveryWaiterCancelsTheRequest() {
+		SingleFlight<String, String> flights = new SingleFlight<>();
+		CompletableFuture<String> source = new CompletableFuture<>();
+
+		CompletableFuture<String> first = flights.execute("a", () -> source);
+		CompletableFuture<String> second = flights.execute("a", () -> source);
+		first.cancel(true);
+		second.cancel(true);
+		assertTrue(source.isCancelled());
+	}
+
+	@Test
+	public void onlyMissingKeysAreRequestedTogether() {
+		SingleFlight<String, String> flights = new SingleFlight<>();
+		CompletableFuture<String> a = new CompletableFuture<>();
+		flights.execute("a", () -> a);
+
+		Map<String, CompletableFuture<String>> results = flights.executeAll(Arrays.asList("a", "b", "c"), keys -> {
+			assertEquals(Arrays.asList("b", "c"), keys);
+			Map<String, CompletableFuture<String>> sources = new HashMap<>();
+			for (String key : keys) {
+				sources.put(key, CompletableFuture.completedFuture(key.toUpperCase()));
+			}
+			return sources;
+		});
+
+		a.complete("A");
+		assertEquals("A", results.get("a").join());
+		assertEquals("B", results.get("b").join());
+		assertEquals("C", results.get("c").join());
+	}
+}
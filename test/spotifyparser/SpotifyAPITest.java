@@ -0,0 +1,91 @@
+package spotifyparser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpotifyAPITest {
+
+	private StubServer server;
+	private SpotifyAPI api;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new StubServer(0);
+		api = new SpotifyAPI(UrlConnectionTransport.SHARED, server.getBaseURL(), server.getBaseURL());
+		api.setLoadCovers(false);
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+	}
+
+	@Test
+	public void albumsAreReturnedInOrder() throws IOException {
+		server.setDiscographySize(45, 3);
+		List<String> ids = api.getAlbumIds(api.getArtistId("Artist"));
+		List<Album> albums = api.getAlbumsData(ids);
+
+		assertEquals(45, ids.size());
+		List<String> albumIds = new ArrayList<>();
+		for (Album album : albums) {
+			albumIds.add(album.getId());
+		}
+		assertEquals(ids, albumIds);
+	}
+
+	@Test
+	public void everyTrackPageIsFetched() throws IOException {
+		server.setDiscographySize(3, 180);
+		List<Album> albums = api.getAlbumsData(api.getAlbumIds(api.getArtistId("Box Set")));
+
+		for (Album album : albums) {
+			List<TrackData> tracks = album.getTracks();
+			assertEquals(180, tracks.size());
+			for (int i = 0; i < tracks.size(); ++i) {
+				assertEquals(i + 1, tracks.get(i).getTrackNumber());
+			}
+		}
+	}
+
+	@Test
+	public void concurrentSearchesShareOneRequest() throws Exception {
+		api.authenticate();
+		long before = server.getRequestCount();
+
+		List<CompletableFuture<String>> searches = new ArrayList<>();
+		for (int i = 0; i < 8; ++i) {
+			searches.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					return api.getArtistId("Same Artist");
+				} catch (IOException ex) {
+					throw new RuntimeException(ex);
+				}
+			}));
+		}
+
+		String id = searches.get(0).get();
+		for (CompletableFuture<String> search : searches) {
+			assertEquals(id, search.get());
+		}
+		assertTrue(server.getRequestCount() - before <= 2);
+	}
+
+	@Test
+	public void cachedAlbumsNeedNoRequest() throws IOException {
+		server.setDiscographySize(5, 3);
+		List<String> ids = api.getAlbumIds(api.getArtistId("Artist"));
+		api.getAlbumsData(ids);
+		long before = server.getRequestCount();
+
+		api.getAlbumsData(ids);
+		assertEquals(before, server.getRequestCount());
+	}
+}
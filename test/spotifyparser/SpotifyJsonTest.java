@@ -0,0 +1,101 @@
+package spotifyparser;
+
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class SpotifyJsonTest {
+
+	private static final String ALBUM = "{\"id\":\"b1\",\"name\":\"The Messenger\","
+			+ "\"artists\":[{\"name\":\"Kurt Elling\"}],"
+			+ "\"images\":[{\"url\":\"https://i.scdn.co/image/640\",\"width\":640,\"height\":640},"
+			+ "{\"url\":\"https://i.scdn.co/image/300\",\"width\":300,\"height\":300},"
+			+ "{\"url\":\"https://i.scdn.co/image/64\",\"width\":64,\"height\":64}],"
+			+ "\"tracks\":{\"items\":[{\"name\":\"Nature Boy\",\"id\":\"t1\",\"duration_ms\":300000,"
+			+ "\"track_number\":1,\"preview_url\":null}],\"next\":null,\"total\":1}}";
+
+	@Test
+	public void coverClosestToTheDisplaySizeIsDisplayed() throws IOException {
+		Album album = SpotifyJson.readAlbum(new JsonReader(new StringReader(ALBUM)), 256);
+		assertEquals("https://i.scdn.co/image/300", album.getCoverImageURL());
+		assertEquals("https://i.scdn.co/image/640", album.getLargestCoverImageURL());
+	}
+
+	@Test
+	public void largestCoverIsDisplayedWhenNoneIsLargeEnough() throws IOException {
+		Album album = SpotifyJson.readAlbum(new JsonReader(new StringReader(ALBUM)), 1000);
+		assertEquals("https://i.scdn.co/image/640", album.getCoverImageURL());
+		assertEquals("https://i.scdn.co/image/640", album.getLargestCoverImageURL());
+	}
+
+	@Test
+	public void onlyTheNamedArrayIsSplit() {
+		String document = "{\"k\":\"albums\",\"other\":[{\"id\":\"x\"}],"
+				+ "\"albums\":[{\"id\":\"a\"},null,{\"id\":\"b\",\"albums\":[{}]}]}";
+		assertEquals(Arrays.asList("{\"id\":\"a\"}", "{\"id\":\"b\",\"albums\":[{}]}"),
+				SpotifyJson.splitArray(document, "albums"));
+	}
+
+	@Test
+	public void stringValuesNamedLikeTheArrayAreIgnored() {
+		String document = "{\"albums\":\"[{}]\",\"next\":[{\"id\":\"x\"}]}";
+		assertEquals(Collections.emptyList(), SpotifyJson.splitArray(document, "albums"));
+	}
+
+	@Test
+	public void arrayValuesAreNotNames() {
+		String document = "[\"albums\",[{\"id\":\"x\"}]]";
+		assertEquals(Collections.emptyList(), SpotifyJson.splitArray(document, "albums"));
+	}
+
+	@Test
+	public void splitAlbumsAreDecodedAsFromTheStream() throws IOException {
+		StringBuilder document = new StringBuilder("{\"kind\":\"albums\",\"albums\":[");
+		for (int i = 0; i < 20; ++i) {
+			if (i == 7) {
+				// Unknown IDs are returned as null
+				document.append("null,");
+			}
+			document.append(ALBUM.replace("\"b1\"", "\"b" + i + "\"")
+					.replace("The Messenger", "The \\\"Messenger\\\" [" + i + "] {live}"));
+			document.append((i < 19) ? "," : "");
+		}
+		document.append("]}");
+
+		List<Album> streamed;
+		try (JsonReader reader = new JsonReader(new StringReader(document.toString()))) {
+			streamed = SpotifyJson.readAlbums(reader, 256);
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<Album> split = SpotifyJson.readAlbums(document.toString(), 256, pool);
+			assertEquals(streamed.size(), split.size());
+			for (int i = 0; i < streamed.size(); ++i) {
+				Album expected = streamed.get(i);
+				Album actual = split.get(i);
+				assertEquals(expected.getId(), actual.getId());
+				assertEquals(expected.getAlbumName(), actual.getAlbumName());
+				assertEquals(expected.getArtistName(), actual.getArtistName());
+				assertEquals(expected.getCoverImageURL(), actual.getCoverImageURL());
+				assertEquals(expected.getLargestCoverImageURL(), actual.getLargestCoverImageURL());
+				assertEquals(expected.getTracks(), actual.getTracks());
+			}
+		} finally {
+			pool.shutdown();
+		}
+		assertEquals(20, streamed.size());
+		assertEquals("The \"Messenger\" [3] {live}", streamed.get(3).getAlbumName());
+	}
+
+	@Test(expected = AssertionError.class)
+	public void unterminatedDocumentIsRejected() {
+		SpotifyJson.splitArray("{\"albums\":[{\"id\":\"a\"}", "albums");
+	}
+}
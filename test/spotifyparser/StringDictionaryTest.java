@@ -0,0 +1,55 @@
+package spotifyparser;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class StringDictionaryTest {
+
+	@Test
+	public void sameStringHasSameIndex() {
+		StringDictionary dictionary = new StringDictionary(10);
+		int first = dictionary.indexOf("https://p.scdn.co/mp3-preview/");
+		int second = dictionary.indexOf("?cid=774b29d4f13844c495f206cafdad9c86");
+
+		assertEquals(first, dictionary.indexOf("https://p.scdn.co/mp3-preview/"));
+		assertEquals("https://p.scdn.co/mp3-preview/", dictionary.get(first));
+		assertEquals("?cid=774b29d4f13844c495f206cafdad9c86", dictionary.get(second));
+	}
+
+	@Test
+	public void fullDictionaryAddsNothing() {
+		StringDictionary dictionary = new StringDictionary(2);
+		dictionary.indexOf("a");
+		dictionary.indexOf("b");
+
+		assertEquals(-1, dictionary.indexOf("c"));
+		assertEquals(1, dictionary.indexOf("b"));
+	}
+
+	@Test
+	public void concurrentReadersSeeEveryString() {
+		StringDictionary dictionary = new StringDictionary(100000);
+		List<CompletableFuture<Void>> threads = new ArrayList<>();
+		for (int t = 0; t < 4; ++t) {
+			threads.add(CompletableFuture.runAsync(() -> {
+				for (int i = 0; i < 20000; ++i) {
+					String value = "https://i.scdn.co/image/" + i + "/";
+					assertEquals(value, dictionary.get(dictionary.indexOf(value)));
+				}
+			}));
+		}
+		threads.forEach(CompletableFuture::join);
+
+		// Each string was added once
+		BitSet indexes = new BitSet();
+		for (int i = 0; i < 20000; ++i) {
+			indexes.set(dictionary.indexOf("https://i.scdn.co/image/" + i + "/"));
+		}
+		assertEquals(20000, indexes.cardinality());
+		assertEquals(20000, indexes.length());
+	}
+}
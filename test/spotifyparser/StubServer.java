@@ -0,0 +1,406 @@
+package spotifyparser;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A local stand-in for the Spotify Web API and accounts service, so that the
+ * client can be measured offline. It answers the endpoints used by
+ * {@link SpotifyAPI} with recorded payloads when available, and otherwise
+ * with generated ones, which are the same on every run. Responses may be
+ * delayed, and some of them answered with {@code 429 Too Many Requests}.
+ * <p>
+ * Recorded payloads are looked up in the fixture directory by request path,
+ * such as {@code v1/albums.json} for {@code /v1/albums}, regardless of the
+ * query string.
+ * <p>
+ * Usage, from the test classes: {@code java -cp
+ * build/classes:build/test/classes:lib/* spotifyparser.StubServer [port]
+ * [latency in ms] [429 rate] [fixture directory]}, then run the application
+ * with {@code -Dspotifyparser.api.url=http://localhost:<port>} and
+ * {@code -Dspotifyparser.accounts.url=http://localhost:<port>}.
+ */
+public class StubServer implements Closeable {
+
+	private static final String BASE62 = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+	private static final int TRACKS_PER_PAGE = 50;
+
+	static {
+		// Headers and body are written separately: without this, each
+		// response waits for the delayed acknowledgement of the client
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	private volatile Path fixtures;
+	private volatile long latencyMillis;
+	private volatile double throttleRate;
+	private volatile int retryAfterSeconds = 1;
+	private volatile int albumsPerArtist = 60;
+	private volatile int tracksPerAlbum = 12;
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong throttled = new AtomicLong();
+
+	/**
+	 * Starts a server on the loopback interface.
+	 *
+	 * @param port the port to listen on, or 0 for any free port.
+	 * @throws IOException if the server could not be started.
+	 */
+	public StubServer(int port) throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		this.executor = Executors.newCachedThreadPool(new UrlConnectionTransport.DaemonThreadFactory("stub-server"));
+
+		server.createContext("/", this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	public static void main(String[] args) throws IOException {
+		StubServer server = new StubServer((args.length > 0) ? Integer.parseInt(args[0]) : 8089);
+		if (args.length > 1) {
+			server.setLatency(Long.parseLong(args[1]), TimeUnit.MILLISECONDS);
+		}
+		if (args.length > 2) {
+			server.setThrottleRate(Double.parseDouble(args[2]));
+		}
+		if (args.length > 3) {
+			server.setFixtures(Paths.get(args[3]));
+		}
+
+		System.out.println("Serving on " + server.getBaseURL());
+	}
+
+	/**
+	 * Returns the URL to use as base URL of both the API and the accounts
+	 * service.
+	 *
+	 * @return the base URL, without trailing slash.
+	 */
+	public String getBaseURL() {
+		return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+	}
+
+	/**
+	 * Sets the directory of recorded payloads.
+	 *
+	 * @param fixtures the directory, or null to only serve generated payloads.
+	 */
+	public void setFixtures(Path fixtures) {
+		this.fixtures = fixtures;
+	}
+
+	/**
+	 * Sets the delay before each response.
+	 *
+	 * @param latency the delay.
+	 * @param unit the unit of {@code latency}.
+	 */
+	public void setLatency(long latency, TimeUnit unit) {
+		this.latencyMillis = unit.toMillis(latency);
+	}
+
+	/**
+	 * Sets the proportion of requests answered with
+	 * {@code 429 Too Many Requests}.
+	 *
+	 * @param throttleRate the probability between 0 and 1.
+	 */
+	public void setThrottleRate(double throttleRate) {
+		this.throttleRate = throttleRate;
+	}
+
+	/**
+	 * Sets the delay requested by throttled responses.
+	 *
+	 * @param retryAfterSeconds the value of the {@code Retry-After} header.
+	 */
+	public void setRetryAfter(int retryAfterSeconds) {
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	/**
+	 * Sets the size of generated discographies.
+	 *
+	 * @param albumsPerArtist the number of albums of each artist.
+	 * @param tracksPerAlbum the number of tracks of each album.
+	 */
+	public void setDiscographySize(int albumsPerArtist, int tracksPerAlbum) {
+		this.albumsPerArtist = albumsPerArtist;
+		this.tracksPerAlbum = tracksPerAlbum;
+	}
+
+	public long getRequestCount() {
+		return requests.get();
+	}
+
+	public long getThrottledCount() {
+		return throttled.get();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (InputStream body = exchange.getRequestBody()) {
+			// Consume the request before answering
+			byte[] buffer = new byte[1024];
+			while (body.read(buffer) != -1) {
+				// Discard
+			}
+		}
+
+		requests.incrementAndGet();
+		try {
+			if (latencyMillis > 0) {
+				Thread.sleep(latencyMillis);
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (throttleRate > 0 && ThreadLocalRandom.current().nextDouble() < throttleRate) {
+			throttled.incrementAndGet();
+			exchange.getResponseHeaders().set("Retry-After", Integer.toString(retryAfterSeconds));
+			send(exchange, 429, "{\"error\":{\"status\":429,\"message\":\"API rate limit exceeded\"}}");
+			return;
+		}
+
+		URI uri = exchange.getRequestURI();
+		String path = uri.getPath();
+		Map<String, String> query = parseQuery(uri.getRawQuery());
+
+		// Prefer recorded payloads
+		Path fixture = (fixtures != null) ? fixtures.resolve(path.substring(1) + ".json") : null;
+		if (fixture != null && Files.isRegularFile(fixture)) {
+			send(exchange, 200, new String(Files.readAllBytes(fixture), StandardCharsets.UTF_8));
+			return;
+		}
+
+		String[] segments = path.split("/");
+		if (path.equals("/api/token")) {
+			send(exchange, 200, "{\"access_token\":\"stub-token\",\"token_type\":\"Bearer\",\"expires_in\":3600}");
+		} else if (path.equals("/v1/search")) {
+			send(exchange, 200, searchPayload(query.getOrDefault("q", "")));
+		} else if (segments.length == 5 && segments[2].equals("artists") && segments[4].equals("albums")) {
+			int offset = Integer.parseInt(query.getOrDefault("offset", "0"));
+			int limit = Integer.parseInt(query.getOrDefault("limit", "20"));
+			send(exchange, 200, albumIdPagePayload(segments[3], offset, limit));
+		} else if (segments.length == 5 && segments[2].equals("albums") && segments[4].equals("tracks")) {
+			int offset = Integer.parseInt(query.getOrDefault("offset", "0"));
+			int limit = Integer.parseInt(query.getOrDefault("limit", "20"));
+			send(exchange, 200, trackPagePayload(segments[3], offset, limit));
+		} else if (path.equals("/v1/albums")) {
+			send(exchange, 200, albumsPayload(query.getOrDefault("ids", "").split(",")));
+		} else if (segments.length == 4 && segments[2].equals("albums")) {
+			send(exchange, 200, albumPayload(segments[3]));
+		} else {
+			send(exchange, 404, "{\"error\":{\"status\":404,\"message\":\"Not found\"}}");
+		}
+	}
+
+	private static void send(HttpExchange exchange, int code, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+
+		// Compress like the real API when the client accepts it
+		String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+		if (acceptEncoding != null && acceptEncoding.contains("gzip") && bytes.length > 256) {
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4);
+			try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+				out.write(bytes);
+			}
+			bytes = compressed.toByteArray();
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+		}
+		exchange.sendResponseHeaders(code, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private static Map<String, String> parseQuery(String rawQuery) throws IOException {
+		Map<String, String> query = new HashMap<>();
+		if (rawQuery == null) {
+			return query;
+		}
+
+		for (String parameter : rawQuery.split("&")) {
+			int equals = parameter.indexOf('=');
+			if (equals > 0) {
+				query.put(parameter.substring(0, equals), URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+			}
+		}
+		return query;
+	}
+
+	private String searchPayload(String artistName) throws IOException {
+		StringWriter buffer = new StringWriter();
+		try (JsonWriter json = new JsonWriter(buffer)) {
+			json.beginObject().name("artists").beginObject();
+			json.name("items").beginArray();
+			json.beginObject();
+			json.name("id").value(idOf("artist:" + artistName.trim().toLowerCase()));
+			json.name("name").value(artistName);
+			json.endObject();
+			json.endArray();
+			json.endObject().endObject();
+		}
+		return buffer.toString();
+	}
+
+	private String albumIdPagePayload(String artistId, int offset, int limit) throws IOException {
+		int end = Math.min(albumsPerArtist, offset + limit);
+
+		StringWriter buffer = new StringWriter();
+		try (JsonWriter json = new JsonWriter(buffer)) {
+			json.beginObject();
+			json.name("items").beginArray();
+			for (int i = offset; i < end; ++i) {
+				json.beginObject().name("id").value(idOf("album:" + artistId + ":" + i)).endObject();
+			}
+			json.endArray();
+			json.name("next").value((end < albumsPerArtist)
+					? String.format("%s/v1/artists/%s/albums?market=CA&offset=%d&limit=%d", getBaseURL(), artistId, end, limit)
+					: null);
+			json.endObject();
+		}
+		return buffer.toString();
+	}
+
+	private String albumsPayload(String[] albumIds) throws IOException {
+		StringWriter buffer = new StringWriter();
+		try (JsonWriter json = new JsonWriter(buffer)) {
+			json.beginObject().name("albums").beginArray();
+			for (String albumId : albumIds) {
+				writeAlbum(json, albumId);
+			}
+			json.endArray().endObject();
+		}
+		return buffer.toString();
+	}
+
+	private String albumPayload(String albumId) throws IOException {
+		StringWriter buffer = new StringWriter();
+		try (JsonWriter json = new JsonWriter(buffer)) {
+			writeAlbum(json, albumId);
+		}
+		return buffer.toString();
+	}
+
+	/**
+	 * Writes an album shaped like those of the Web API, with the fields read
+	 * by {@link SpotifyJson} and a few ignored ones.
+	 */
+	private void writeAlbum(JsonWriter json, String albumId) throws IOException {
+		json.beginObject();
+		json.name("album_type").value("album");
+		json.name("id").value(albumId);
+		json.name("name").value("Album " + albumId.substring(0, 8));
+		json.name("release_date").value("2001-01-01");
+
+		json.name("artists").beginArray();
+		json.beginObject().name("name").value("Artist " + albumId.substring(8, 12)).endObject();
+		json.endArray();
+
+		json.name("images").beginArray();
+		for (int width : new int[]{640, 300, 64}) {
+			json.beginObject();
+			json.name("height").value(width);
+			json.name("url").value("https://i.scdn.co/image/" + idOf("cover:" + albumId + ":" + width));
+			json.name("width").value(width);
+			json.endObject();
+		}
+		json.endArray();
+
+		// Like the Web API, only the first page of tracks is included
+		json.name("tracks");
+		writeTrackPage(json, albumId, 0, TRACKS_PER_PAGE);
+
+		json.endObject();
+	}
+
+	private String trackPagePayload(String albumId, int offset, int limit) throws IOException {
+		StringWriter buffer = new StringWriter();
+		try (JsonWriter json = new JsonWriter(buffer)) {
+			writeTrackPage(json, albumId, offset, limit);
+		}
+		return buffer.toString();
+	}
+
+	private void writeTrackPage(JsonWriter json, String albumId, int offset, int limit) throws IOException {
+		int end = Math.min(tracksPerAlbum, offset + limit);
+		String href = getBaseURL() + "/v1/albums/" + albumId + "/tracks";
+
+		json.beginObject();
+		json.name("href").value(href + "?offset=" + offset + "&limit=" + limit);
+		json.name("items").beginArray();
+		for (int i = offset + 1; i <= end; ++i) {
+			String trackId = idOf("track:" + albumId + ":" + i);
+			json.beginObject();
+			json.name("disc_number").value(1);
+			json.name("duration_ms").value(180000 + 1000 * (trackId.charAt(0) % 60));
+			json.name("id").value(trackId);
+			json.name("name").value("Track " + i + " of " + albumId.substring(0, 8));
+			json.name("preview_url").value("https://p.scdn.co/mp3-preview/" + trackId + "?cid=stub");
+			json.name("track_number").value(i);
+			json.endObject();
+		}
+		json.endArray();
+		json.name("limit").value(limit);
+		json.name("next").value((end < tracksPerAlbum) ? href + "?offset=" + end + "&limit=" + limit : null);
+		json.name("offset").value(offset);
+		json.name("total").value(tracksPerAlbum);
+		json.endObject();
+	}
+
+	/**
+	 * Derives a Spotify-like ID from a string, always the same for the same
+	 * string.
+	 */
+	private static String idOf(String seed) {
+		long state = seed.hashCode() * 0x9E3779B97F4A7C15L + seed.length();
+		char[] id = new char[22];
+		for (int i = 0; i < id.length; ++i) {
+			// SplitMix64 steps
+			state += 0x9E3779B97F4A7C15L;
+			long z = state;
+			z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+			z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+			z ^= z >>> 31;
+			id[i] = BASE62.charAt((int) ((z >>> 1) % 62));
+		}
+		return new String(id);
+	}
+}
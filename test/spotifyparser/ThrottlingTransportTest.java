@@ -0,0 +1,153 @@
+package spotifyparser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class ThrottlingTransportTest {
+
+	/**
+	 * Answers with the given statuses in order, then with 200.
+	 */
+	private static class ScriptedTransport implements HttpTransport {
+
+		private final Deque<ApiResponse> responses = new ArrayDeque<>();
+		final AtomicInteger requests = new AtomicInteger();
+
+		ScriptedTransport throttle(String retryAfter) {
+			Map<String, List<String>> headers = Collections.singletonMap("Retry-After", Arrays.asList(retryAfter));
+			responses.add(new ApiResponse(429, headers, new ByteArrayInputStream(new byte[0])));
+			return this;
+		}
+
+		@Override
+		public synchronized ApiResponse send(ApiRequest request) throws IOException {
+			requests.incrementAndGet();
+			ApiResponse response = responses.poll();
+			return (response != null) ? response
+					: new ApiResponse(200, Collections.emptyMap(), new ByteArrayInputStream(new byte[0]));
+		}
+
+		@Override
+		public Executor getExecutor() {
+			return Runnable::run;
+		}
+	}
+
+	@Test
+	public void shortRetryAfterIsWaitedFor() throws IOException {
+		ScriptedTransport delegate = new ScriptedTransport().throttle("1");
+		ThrottlingTransport transport = new ThrottlingTransport(delegate, 100, 100, 1, 4, 2);
+
+		long start = System.nanoTime();
+		try (ApiResponse response = transport.send(ApiRequest.get("http://localhost/v1/albums"))) {
+			assertEquals(200, response.getStatusCode());
+		}
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900));
+		assertEquals(2, delegate.requests.get());
+		assertEquals(1, transport.getRetryCount());
+	}
+
+	@Test
+	public void longRetryAfterFailsFast() throws IOException {
+		ScriptedTransport delegate = new ScriptedTransport().throttle("3600");
+		ThrottlingTransport transport = new ThrottlingTransport(delegate, 100, 100, 1, 4, 2);
+
+		long start = System.nanoTime();
+		try (ApiResponse response = transport.send(ApiRequest.get("http://localhost/v1/albums"))) {
+			assertEquals(429, response.getStatusCode());
+		}
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+		assertEquals(1, delegate.requests.get());
+		assertEquals(0, transport.getRetryCount());
+	}
+
+	@Test
+	public void retryAfterIsParsedAsSecondsOrDate() {
+		assertEquals(TimeUnit.SECONDS.toNanos(5), ThrottlingTransport.parseRetryAfter(" 5 "));
+		assertEquals(0, ThrottlingTransport.parseRetryAfter("-3"));
+		assertEquals(0, ThrottlingTransport.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+		assertEquals(-1, ThrottlingTransport.parseRetryAfter("soon"));
+		assertEquals(-1, ThrottlingTransport.parseRetryAfter(null));
+	}
+
+	@Test(timeout = 5000)
+	public void cancellationWakesUpThrottledRequests() throws Exception {
+		ScriptedTransport delegate = new ScriptedTransport().throttle("20");
+		ThrottlingTransport transport = new ThrottlingTransport(delegate, 100, 100, 1, 4, 0);
+		transport.send(ApiRequest.get("http://localhost/v1/albums")).close();
+
+		// Waiting for the delay requested by the first response
+		Cancellation cancellation = new Cancellation();
+		CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> {
+			try {
+				transport.send(ApiRequest.get("http://localhost/v1/albums").setCancellation(cancellation)).close();
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		});
+
+		Thread.sleep(200);
+		cancellation.cancel();
+		try {
+			waiting.join();
+		} catch (CompletionException ex) {
+			assertTrue(ex.getCause().getCause() instanceof InterruptedIOException);
+			return;
+		}
+		fail("Request was not cancelled");
+	}
+
+	@Test(timeout = 5000)
+	public void cancellationWakesUpBackoff() throws Exception {
+		Cancellation cancellation = new Cancellation();
+		HttpTransport failing = new HttpTransport() {
+			@Override
+			public ApiResponse send(ApiRequest request) throws IOException {
+				return new ApiResponse(503, Collections.emptyMap(), new ByteArrayInputStream(new byte[0]));
+			}
+
+			@Override
+			public Executor getExecutor() {
+				return Runnable::run;
+			}
+		};
+		ThrottlingTransport transport = new ThrottlingTransport(failing, 100, 100, 1, 4, 20);
+
+		CompletableFuture<Void> retrying = CompletableFuture.runAsync(() -> {
+			try {
+				transport.send(ApiRequest.get("http://localhost/v1/albums").setCancellation(cancellation)).close();
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		});
+
+		// Retried until the backoff exceeds the time left
+		Thread.sleep(1000);
+		long start = System.nanoTime();
+		cancellation.cancel();
+		try {
+			retrying.join();
+			fail("Request was not cancelled");
+		} catch (CompletionException ex) {
+			assertTrue(ex.getCause().getCause() instanceof InterruptedIOException);
+		}
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+	}
+}
@@ -0,0 +1,42 @@
+package spotifyparser;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class TokenManagerTest {
+
+	@Test
+	public void tokenIsReusedWhileValid() throws IOException {
+		AtomicInteger requests = new AtomicInteger();
+		TokenManager tokens = new TokenManager(() -> new AccessToken("t" + requests.incrementAndGet(), 3600));
+
+		assertEquals("t1", tokens.getToken());
+		assertEquals("t1", tokens.getToken());
+		assertEquals(1, requests.get());
+	}
+
+	@Test
+	public void rejectedTokenIsRenewedOnce() throws IOException {
+		AtomicInteger requests = new AtomicInteger();
+		TokenManager tokens = new TokenManager(() -> new AccessToken("t" + requests.incrementAndGet(), 3600));
+
+		tokens.getToken();
+		assertEquals("t2", tokens.getTokenAfterRejection("t1"));
+
+		// Another caller rejected by the same token gets the renewed one
+		assertEquals("t2", tokens.getTokenAfterRejection("t1"));
+		assertEquals(2, requests.get());
+	}
+
+	@Test
+	public void shortLivedTokensAreNotRenewedInALoop() throws Exception {
+		AtomicInteger requests = new AtomicInteger();
+		TokenManager tokens = new TokenManager(() -> new AccessToken("t" + requests.incrementAndGet(), 60));
+
+		tokens.getToken();
+		Thread.sleep(500);
+		assertEquals(1, requests.get());
+	}
+}
@@ -0,0 +1,94 @@
+package spotifyparser;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class TrackTableTest {
+
+	private static final String BASE62 = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+	private static final String HEX = "0123456789abcdef";
+
+	@Test
+	public void rowsAreReadBack() {
+		TrackTable table = new TrackTable();
+		table.add("Nature Boy", "4uLU6hMCjMI75M1A2tKUQC", 300, 1, "https://p.scdn.co/mp3-preview/abc?cid=1");
+		table.add("Ship Ahoy", "7ouMYWpwJ422jRcDASZB7P", 200, 2, null);
+		table.trimToSize();
+
+		List<TrackData> tracks = table.asList();
+		assertEquals(2, tracks.size());
+		assertEquals("Nature Boy", tracks.get(0).getName());
+		assertEquals("4uLU6hMCjMI75M1A2tKUQC", tracks.get(0).getId());
+		assertEquals(300, tracks.get(0).getLength());
+		assertEquals("https://p.scdn.co/mp3-preview/abc?cid=1", tracks.get(0).getPreviewURL());
+		assertNull(tracks.get(1).getPreviewURL());
+		assertFalse(tracks.get(1).hasPreview());
+	}
+
+	@Test
+	public void viewsOfTheSameRowAreEqual() {
+		TrackTable table = new TrackTable();
+		table.add("Nature Boy", "4uLU6hMCjMI75M1A2tKUQC", 300, 1, null);
+
+		TrackData first = table.get(0);
+		TrackData second = table.asList().get(0);
+		assertTrue(first != second);
+		assertEquals(first, second);
+		assertEquals(first.hashCode(), second.hashCode());
+	}
+
+	@Test
+	public void tableIsCompleteOnceEveryTrackIsAdded() {
+		TrackTable table = new TrackTable();
+		table.setTotal(2);
+		table.add("One", "id1", 1, 1, null);
+		assertFalse(table.isComplete());
+
+		table.add("Two", "id2", 1, 2, null);
+		assertTrue(table.isComplete());
+	}
+
+	@Test
+	public void albumsShareTheirTable() {
+		AlbumTable table = new AlbumTable();
+		table.add("b1", "Artist", "First", null, new TrackTable());
+		table.add("b2", "Artist", "Second", "https://i.scdn.co/image/b2", new TrackTable());
+
+		assertEquals("First", table.get(0).getAlbumName());
+		assertEquals("Artist", table.get(1).getArtistName());
+		assertEquals("https://i.scdn.co/image/b2", table.get(1).getCoverImageURL());
+	}
+
+	@Test
+	public void tracksTakeAboutOneHundredTwentyBytes() {
+		// 20,000 tracks as fetched from the API, in albums of 12 tracks.
+		// The estimate matches the heap within a few percent: about 120
+		// bytes per track, and 320 bytes as separate objects.
+		long estimated = 0;
+		for (int album = 0; album < 20000 / 12; ++album) {
+			TrackTable table = new TrackTable();
+			for (int track = 1; track <= 12; ++track) {
+				table.add("Track " + track + " of album " + album, randomDigits(BASE62, 22), 200 + track, track,
+						"https://p.scdn.co/mp3-preview/" + randomDigits(HEX, 40) + "?cid=774b29d4f13844c495f206cafdad9c86");
+			}
+			table.trimToSize();
+			estimated += table.getMemoryUsage();
+		}
+
+		long perTrack = estimated / (20000 / 12 * 12);
+		assertTrue("Estimated " + perTrack + " bytes per track", perTrack <= 130);
+	}
+
+	private static String randomDigits(String digits, int length) {
+		char[] value = new char[length];
+		for (int i = 0; i < value.length; ++i) {
+			value[i] = digits.charAt(ThreadLocalRandom.current().nextInt(digits.length()));
+		}
+		return new String(value);
+	}
+}
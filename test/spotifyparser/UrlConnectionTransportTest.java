@@ -0,0 +1,108 @@
+package spotifyparser;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UrlConnectionTransportTest {
+
+	private HttpServer server;
+	private String baseURL;
+	private final UrlConnectionTransport transport = new UrlConnectionTransport(1, 5000, 5000);
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/gzip", exchange -> {
+			byte[] body = gzip("{\"name\":\"value\"}");
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			exchange.getResponseHeaders().set("ETag", "\"v1\"");
+			if (exchange.getRequestMethod().equals("HEAD")) {
+				exchange.sendResponseHeaders(200, -1);
+			} else if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				exchange.sendResponseHeaders(304, -1);
+			} else {
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			}
+			exchange.close();
+		});
+		server.createContext("/empty", exchange -> {
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			exchange.sendResponseHeaders(204, -1);
+			exchange.close();
+		});
+		server.start();
+		baseURL = "http://localhost:" + server.getAddress().getPort();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	public void compressedBodyIsDecoded() throws IOException {
+		try (ApiResponse response = transport.send(ApiRequest.get(baseURL + "/gzip"))) {
+			assertEquals(200, response.getStatusCode());
+			assertEquals("{\"name\":\"value\"}", read(response.getBody()));
+			assertNull(response.getHeader("Content-Encoding"));
+		}
+	}
+
+	@Test
+	public void notModifiedResponseHasNoBody() throws IOException {
+		ApiRequest request = ApiRequest.get(baseURL + "/gzip").setHeader("If-None-Match", "\"v1\"");
+		try (ApiResponse response = transport.send(request)) {
+			assertEquals(304, response.getStatusCode());
+			assertEquals("", read(response.getBody()));
+			assertEquals("\"v1\"", response.getHeader("ETag"));
+		}
+	}
+
+	@Test
+	public void noContentResponseHasNoBody() throws IOException {
+		try (ApiResponse response = transport.send(ApiRequest.get(baseURL + "/empty"))) {
+			assertEquals(204, response.getStatusCode());
+			assertEquals("", read(response.getBody()));
+		}
+	}
+
+	@Test
+	public void headResponseHasNoBody() throws IOException {
+		try (ApiResponse response = transport.send(new ApiRequest("HEAD", baseURL + "/gzip", null))) {
+			assertEquals(200, response.getStatusCode());
+			assertEquals("", read(response.getBody()));
+		}
+	}
+
+	private static byte[] gzip(String value) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+			out.write(value.getBytes(StandardCharsets.UTF_8));
+		}
+		return bytes.toByteArray();
+	}
+
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = in.read(buffer)) != -1) {
+			bytes.write(buffer, 0, n);
+		}
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+}